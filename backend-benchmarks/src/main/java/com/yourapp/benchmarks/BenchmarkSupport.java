@@ -0,0 +1,49 @@
+package com.yourapp.benchmarks;
+
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shared fixtures: wiring @Value fields without Spring, and signed login messages
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    public static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name, e);
+        }
+    }
+
+    public static String loginMessage(String address, String nonce) {
+        return "Login to ComputerChan\nAddress: " + address + "\nNonce: " + nonce;
+    }
+
+    /**
+     * A freshly generated key's address and its personal_sign signature over message
+     */
+    public static String[] signedLogin(String nonce) {
+        try {
+            ECKeyPair keyPair = Keys.createEcKeyPair();
+            String address = "0x" + Keys.getAddress(keyPair);
+            String message = loginMessage(address, nonce);
+            Sign.SignatureData sig = Sign.signPrefixedMessage(message.getBytes(StandardCharsets.UTF_8), keyPair);
+            String signature = Numeric.toHexString(sig.getR()) + Numeric.toHexStringNoPrefix(sig.getS())
+                + Numeric.toHexStringNoPrefix(sig.getV());
+            return new String[] {address, message, signature};
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
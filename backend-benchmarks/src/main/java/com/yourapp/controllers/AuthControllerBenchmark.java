@@ -0,0 +1,29 @@
+package com.yourapp.controllers;
+
+import com.yourapp.benchmarks.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthControllerBenchmark {
+
+    private AuthController controller;
+    private String message;
+
+    @Setup
+    public void setup() {
+        controller = new AuthController(null, null, null, null, null, null, null);
+        message = BenchmarkSupport.loginMessage("0x52908400098527886e0f7030069857d2e4169ee7", "482913");
+    }
+
+    @Benchmark
+    public String extractNonceFromMessage() {
+        return controller.extractNonceFromMessage(message);
+    }
+}
@@ -0,0 +1,299 @@
+package com.yourapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for the wallet login flow:
+ * GET /api/auth/nonce, sign locally, POST /api/auth/verify-signature,
+ * GET /api/user/profile/{address}.
+ *
+ * Profiles:
+ *   ramp  - start with --ramp-step virtual users and add --ramp-step more every
+ *           --step-seconds until --concurrency; one report line per step
+ *   soak  - hold --concurrency virtual users for --duration-seconds; one report
+ *           line per --report-seconds, watch the heap floor for growth
+ *
+ * Other options: --base-url=http://localhost:18080, --wallets=2000 (as seeded by
+ * LoadTestServer), --think-ms=0, --timeout-ms=10000.
+ */
+public class LoadTest {
+
+    private static final String[] STEPS = {"nonce", "verify", "profile"};
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl;
+    private final LoadTestWallets wallets;
+    private final long thinkMs;
+    private final Duration timeout;
+
+    // Wallets with a login in flight; a second login would overwrite the first one's nonce
+    private final AtomicIntegerArray inFlight;
+
+    private volatile boolean running = true;
+    private volatile Stats window = new Stats();
+    private final Stats overall = new Stats();
+
+    LoadTest(String baseUrl, LoadTestWallets wallets, long thinkMs, Duration timeout) {
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.baseUrl = baseUrl;
+        this.wallets = wallets;
+        this.inFlight = new AtomicIntegerArray(wallets.size());
+        this.thinkMs = thinkMs;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestArgs options = new LoadTestArgs(args);
+        String profile = options.get("profile", "ramp");
+        int concurrency = options.getInt("concurrency", 32);
+        int rampStep = options.getInt("ramp-step", 4);
+        int stepSeconds = options.getInt("step-seconds", 20);
+        int durationSeconds = options.getInt("duration-seconds", 600);
+        int reportSeconds = options.getInt("report-seconds", 30);
+
+        System.out.println("Deriving wallet keys...");
+        LoadTestWallets wallets = new LoadTestWallets(options.getInt("wallets", 2000));
+        LoadTest test = new LoadTest(options.get("base-url", "http://localhost:18080"), wallets,
+            options.getLong("think-ms", 0), Duration.ofMillis(options.getLong("timeout-ms", 10_000)));
+
+        if ("soak".equals(profile)) {
+            test.soak(concurrency, durationSeconds, reportSeconds);
+        } else if ("ramp".equals(profile)) {
+            test.ramp(rampStep, concurrency, stepSeconds);
+        } else {
+            throw new IllegalArgumentException("Unknown profile: " + profile);
+        }
+        System.exit(0);
+    }
+
+    void ramp(int step, int maxUsers, int stepSeconds) throws InterruptedException {
+        ExecutorService users = Executors.newFixedThreadPool(maxUsers);
+        ServerSampler sampler = startSampler();
+        List<ServerSampler.Window> samples = new ArrayList<>();
+        printHeader("users");
+        sampler.takeWindow();
+        for (int active = 0; active < maxUsers; ) {
+            int target = Math.min(maxUsers, active + step);
+            for (; active < target; active++) {
+                users.submit(this::runUser);
+            }
+            Thread.sleep(stepSeconds * 1000L);
+            ServerSampler.Window server = sampler.takeWindow();
+            samples.add(server);
+            printLine(String.valueOf(active), takeWindow(), server, stepSeconds);
+        }
+        finish(users, sampler, samples);
+    }
+
+    void soak(int concurrency, int durationSeconds, int reportSeconds) throws InterruptedException {
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        ServerSampler sampler = startSampler();
+        List<ServerSampler.Window> samples = new ArrayList<>();
+        printHeader("elapsed");
+        sampler.takeWindow();
+        for (int i = 0; i < concurrency; i++) {
+            users.submit(this::runUser);
+        }
+        for (int elapsed = 0; elapsed < durationSeconds; ) {
+            int interval = Math.min(reportSeconds, durationSeconds - elapsed);
+            Thread.sleep(interval * 1000L);
+            elapsed += interval;
+            ServerSampler.Window server = sampler.takeWindow();
+            samples.add(server);
+            printLine(elapsed + "s", takeWindow(), server, interval);
+        }
+        finish(users, sampler, samples);
+    }
+
+    private ServerSampler startSampler() {
+        ServerSampler sampler = new ServerSampler(client, baseUrl);
+        Thread thread = new Thread(sampler, "server-sampler");
+        thread.setDaemon(true);
+        thread.start();
+        return sampler;
+    }
+
+    private void finish(ExecutorService users, ServerSampler sampler, List<ServerSampler.Window> samples)
+            throws InterruptedException {
+        running = false;
+        users.shutdown();
+        users.awaitTermination(timeout.toMillis() * 2, TimeUnit.MILLISECONDS);
+        sampler.stop();
+
+        System.out.println();
+        System.out.printf("Total: %d logins, %d failed (%.2f%%)%n", overall.flow.count(), overall.failures.sum(),
+            percent(overall.failures.sum(), overall.flow.count() + overall.failures.sum()));
+        System.out.printf("Login flow    p50 %7.1f  p95 %7.1f  p99 %7.1f  max %7.1f ms%n",
+            overall.flow.percentileMillis(0.50), overall.flow.percentileMillis(0.95),
+            overall.flow.percentileMillis(0.99), overall.flow.maxMillis());
+        for (String step : STEPS) {
+            LatencyHistogram histogram = overall.steps.get(step);
+            System.out.printf("  %-11s p50 %7.1f  p95 %7.1f  p99 %7.1f  max %7.1f ms%n", step,
+                histogram.percentileMillis(0.50), histogram.percentileMillis(0.95),
+                histogram.percentileMillis(0.99), histogram.maxMillis());
+        }
+        if (!overall.errors.isEmpty()) {
+            System.out.println("Errors by step/status: " + new TreeMap<>(overall.errors));
+        }
+
+        // Heap floor (lowest sample) per window approximates live data after GC
+        List<ServerSampler.Window> withHeap = samples.stream().filter(w -> w.samples > 0).toList();
+        if (withHeap.size() >= 2) {
+            double first = withHeap.get(0).heapMinMb;
+            double last = withHeap.get(withHeap.size() - 1).heapMinMb;
+            System.out.printf("Heap floor: %.0f MB -> %.0f MB (%+.0f MB)%n", first, last, last - first);
+        }
+    }
+
+    private void runUser() {
+        while (running) {
+            int wallet = ThreadLocalRandom.current().nextInt(wallets.size());
+            if (!inFlight.compareAndSet(wallet, 0, 1)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                if (login(wallet)) {
+                    Stats stats = window;
+                    long micros = (System.nanoTime() - start) / 1000;
+                    stats.flow.record(micros);
+                    overall.flow.record(micros);
+                }
+            } finally {
+                inFlight.set(wallet, 0);
+            }
+            if (thinkMs > 0) {
+                try {
+                    Thread.sleep(thinkMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One full login; false (and an error recorded) if any step fails
+     */
+    private boolean login(int wallet) {
+        String address = wallets.address(wallet);
+        JsonNode nonceResponse = call("nonce", HttpRequest.newBuilder(
+            URI.create(baseUrl + "/api/auth/nonce?address=" + address)).GET());
+        if (nonceResponse == null) {
+            return false;
+        }
+
+        String message = LoadTestWallets.loginMessage(address, nonceResponse.path("nonce").asText());
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(Map.of(
+                "message", message,
+                "signature", wallets.sign(wallet, message),
+                "address", address));
+        } catch (Exception e) {
+            recordError("verify", "sign");
+            return false;
+        }
+        JsonNode verifyResponse = call("verify", HttpRequest.newBuilder(
+                URI.create(baseUrl + "/api/auth/verify-signature"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body)));
+        if (verifyResponse == null) {
+            return false;
+        }
+
+        return call("profile", HttpRequest.newBuilder(
+            URI.create(baseUrl + "/api/user/profile/" + address)).GET()) != null;
+    }
+
+    private JsonNode call(String step, HttpRequest.Builder request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request.timeout(timeout).build(),
+                HttpResponse.BodyHandlers.ofString());
+            long micros = (System.nanoTime() - start) / 1000;
+            window.steps.get(step).record(micros);
+            overall.steps.get(step).record(micros);
+            if (response.statusCode() != 200) {
+                recordError(step, String.valueOf(response.statusCode()));
+                return null;
+            }
+            return objectMapper.readTree(response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            recordError(step, e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private void recordError(String step, String reason) {
+        String key = step + ":" + reason;
+        window.failures.increment();
+        overall.failures.increment();
+        window.errors.computeIfAbsent(key, k -> new LongAdder()).increment();
+        overall.errors.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private Stats takeWindow() {
+        Stats taken = window;
+        window = new Stats();
+        return taken;
+    }
+
+    private static void printHeader(String label) {
+        System.out.printf("%8s %8s %7s %8s %8s %8s %8s %8s %8s %7s %7s %7s%n", label, "logins/s", "err%",
+            "p50 ms", "p95 ms", "p99 ms", "verify95", "heapMin", "heapMax", "usrConn", "usrWait", "sqdConn");
+    }
+
+    private static void printLine(String label, Stats stats, ServerSampler.Window server, int seconds) {
+        long ok = stats.flow.count();
+        long failed = stats.failures.sum();
+        System.out.printf("%8s %8.1f %7.2f %8.1f %8.1f %8.1f %8.1f %8.0f %8.0f %7.0f %7.0f %7.0f%n", label,
+            ok / (double) seconds, percent(failed, ok + failed),
+            stats.flow.percentileMillis(0.50), stats.flow.percentileMillis(0.95), stats.flow.percentileMillis(0.99),
+            stats.steps.get("verify").percentileMillis(0.95),
+            server.samples > 0 ? server.heapMinMb : -1, server.heapMaxMb,
+            server.usersActiveMax, server.usersPendingMax, server.subsquidActiveMax);
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    private static class Stats {
+        final LatencyHistogram flow = new LatencyHistogram();
+        final Map<String, LatencyHistogram> steps = new ConcurrentHashMap<>();
+        final LongAdder failures = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        Stats() {
+            for (String step : STEPS) {
+                steps.put(step, new LatencyHistogram());
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.yourapp.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * --key=value command line options with defaults
+ */
+class LoadTestArgs {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    LoadTestArgs(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int eq = arg.indexOf('=');
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    boolean has(String key) {
+        return values.containsKey(key);
+    }
+}
@@ -0,0 +1,77 @@
+package com.yourapp.loadtest;
+
+import com.yourapp.BackendApplication;
+import org.springframework.boot.SpringApplication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Starts the backend against local stand-ins instead of Supabase.
+ *
+ * By default both the users database and the Subsquid database are in-memory H2
+ * (PostgreSQL mode). Pass --subsquid.db.url / --spring.datasource.url (and the
+ * matching username, password and driver-class-name) to use a local PostgreSQL
+ * instead. The Subsquid stand-in is seeded before the application starts.
+ *
+ * Options (besides any Spring property):
+ *   --loadtest.wallets=2000        wallets to seed; must match the load generator
+ *   --loadtest.whale-share=0.01    fraction of wallets holding 100-600 tokens
+ *   --loadtest.holder-share=0.6    fraction of wallets holding 1-20 tokens
+ *   --loadtest.seed=42
+ */
+public class LoadTestServer {
+
+    private static final String H2_SUBSQUID = "jdbc:h2:mem:subsquid;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String H2_USERS = "jdbc:h2:mem:users;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    public static void main(String[] args) {
+        LoadTestArgs options = new LoadTestArgs(args);
+
+        Map<String, String> defaults = new HashMap<>();
+        defaults.put("server.port", "18080");
+        defaults.put("spring.jpa.show-sql", "false");
+        defaults.put("metrics.server-timing.enabled", "true");
+        // Every simulated wallet logs in from this one machine
+        defaults.put("ratelimit.enabled", "false");
+        if (!options.has("spring.datasource.url")) {
+            defaults.put("spring.datasource.url", H2_USERS);
+            defaults.put("spring.datasource.username", "sa");
+            defaults.put("spring.datasource.password", "");
+            defaults.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            defaults.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+            // H2 is in-process, so the Supabase-sized pool would only measure itself
+            defaults.put("spring.datasource.hikari.maximum-pool-size", "10");
+        }
+        String subsquidUrl = options.get("subsquid.db.url", H2_SUBSQUID);
+        String subsquidUser = options.get("subsquid.db.username", "sa");
+        String subsquidPassword = options.get("subsquid.db.password", "");
+        if (!options.has("subsquid.db.url")) {
+            defaults.put("subsquid.db.url", H2_SUBSQUID);
+            defaults.put("subsquid.db.username", subsquidUser);
+            defaults.put("subsquid.db.password", subsquidPassword);
+            defaults.put("subsquid.db.driver-class-name", "org.h2.Driver");
+        }
+
+        LoadTestWallets wallets = new LoadTestWallets(options.getInt("loadtest.wallets", 2000));
+        new SubsquidSeeder(wallets,
+            options.getDouble("loadtest.whale-share", 0.01),
+            options.getDouble("loadtest.holder-share", 0.6),
+            options.getLong("loadtest.seed", 42))
+            .seed(subsquidUrl, subsquidUser, subsquidPassword);
+
+        // Passed as command line properties so they win over application.properties;
+        // anything given on the real command line wins over the stand-in defaults
+        List<String> springArgs = new ArrayList<>();
+        defaults.forEach((key, value) -> {
+            if (!options.has(key)) {
+                springArgs.add("--" + key + "=" + value);
+            }
+        });
+        springArgs.addAll(Arrays.asList(args));
+        SpringApplication.run(BackendApplication.class, springArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,55 @@
+package com.yourapp.loadtest;
+
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+
+/**
+ * Deterministic wallets shared by the stand-in seeder and the load generator:
+ * wallet i always has the same key, so the client can sign for the addresses
+ * the server was seeded with without exchanging any files.
+ */
+public final class LoadTestWallets {
+
+    private final ECKeyPair[] keys;
+    private final String[] addresses;
+
+    public LoadTestWallets(int count) {
+        keys = new ECKeyPair[count];
+        addresses = new String[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            byte[] privateKey = Hash.sha3(("computerchan-loadtest-" + i).getBytes(StandardCharsets.UTF_8));
+            keys[i] = ECKeyPair.create(privateKey);
+            addresses[i] = "0x" + Keys.getAddress(keys[i]);
+        });
+    }
+
+    public int size() {
+        return addresses.length;
+    }
+
+    public String address(int i) {
+        return addresses[i];
+    }
+
+    /**
+     * The login message the frontend builds (see createLoginMessage in frontend-react)
+     */
+    public static String loginMessage(String address, String nonce) {
+        return "Login to ComputerChan\nAddress: " + address + "\nNonce: " + nonce;
+    }
+
+    /**
+     * personal_sign signature over message, as a 0x-prefixed 65-byte hex string
+     */
+    public String sign(int i, String message) {
+        Sign.SignatureData sig = Sign.signPrefixedMessage(message.getBytes(StandardCharsets.UTF_8), keys[i]);
+        return Numeric.toHexString(sig.getR()) + Numeric.toHexStringNoPrefix(sig.getS())
+            + Numeric.toHexStringNoPrefix(sig.getV());
+    }
+}
@@ -0,0 +1,116 @@
+package com.yourapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Polls the backend's actuator once a second for heap use and connection usage
+ * of both pools (users datasource via hikaricp.*, Subsquid via /actuator/backend).
+ */
+class ServerSampler implements Runnable {
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile boolean running = true;
+    private Window window = new Window();
+
+    ServerSampler(HttpClient client, String baseUrl) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                sample();
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Samples taken since the previous call
+     */
+    synchronized Window takeWindow() {
+        Window taken = window;
+        window = new Window();
+        return taken;
+    }
+
+    private void sample() {
+        double heap = metric("jvm.memory.used?tag=area:heap");
+        double usersActive = metric("hikaricp.connections.active");
+        double usersPending = metric("hikaricp.connections.pending");
+        double subsquidActive = -1;
+        double subsquidWaiting = -1;
+        JsonNode backend = get("/actuator/backend");
+        if (backend != null) {
+            JsonNode pool = backend.path("subsquid.pool");
+            subsquidActive = pool.path("active").asDouble(-1);
+            subsquidWaiting = pool.path("waiting").asDouble(-1);
+        }
+        synchronized (this) {
+            window.add(heap / (1024 * 1024), usersActive, usersPending, subsquidActive, subsquidWaiting);
+        }
+    }
+
+    private double metric(String name) {
+        JsonNode node = get("/actuator/metrics/" + name);
+        if (node == null) {
+            return -1;
+        }
+        return node.path("measurements").path(0).path("value").asDouble(-1);
+    }
+
+    private JsonNode get(String path) {
+        try {
+            HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(2)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static class Window {
+        int samples;
+        double heapMinMb = Double.MAX_VALUE;
+        double heapMaxMb;
+        double usersActiveMax;
+        double usersPendingMax;
+        double subsquidActiveMax;
+        double subsquidWaitingMax;
+
+        void add(double heapMb, double usersActive, double usersPending, double subsquidActive, double subsquidWaiting) {
+            if (heapMb < 0) {
+                return;
+            }
+            samples++;
+            heapMinMb = Math.min(heapMinMb, heapMb);
+            heapMaxMb = Math.max(heapMaxMb, heapMb);
+            usersActiveMax = Math.max(usersActiveMax, usersActive);
+            usersPendingMax = Math.max(usersPendingMax, usersPending);
+            subsquidActiveMax = Math.max(subsquidActiveMax, subsquidActive);
+            subsquidWaitingMax = Math.max(subsquidWaitingMax, subsquidWaiting);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.yourapp.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fills a stand-in nft_owners table with a skewed holder distribution:
+ * a few whales holding hundreds of tokens, many wallets holding one to a handful,
+ * and the rest holding nothing (they log in as non-holders).
+ */
+public class SubsquidSeeder {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final LoadTestWallets wallets;
+    private final double whaleShare;
+    private final double holderShare;
+    private final long seed;
+
+    public SubsquidSeeder(LoadTestWallets wallets, double whaleShare, double holderShare, long seed) {
+        this.wallets = wallets;
+        this.whaleShare = whaleShare;
+        this.holderShare = holderShare;
+        this.seed = seed;
+    }
+
+    /**
+     * Recreate nft_owners at url and return the number of rows written
+     */
+    public int seed(String url, String username, String password) {
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(url, username, password));
+        jdbc.execute("CREATE TABLE IF NOT EXISTS nft_owners (owner_id VARCHAR(42), nft_id VARCHAR(10))");
+        jdbc.execute("DELETE FROM nft_owners");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS nft_owners_owner_id_idx ON nft_owners (owner_id)");
+
+        Random random = new Random(seed);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        int nextToken = 1;
+        int whales = 0;
+        int holders = 0;
+        for (int i = 0; i < wallets.size(); i++) {
+            double roll = random.nextDouble();
+            int tokens;
+            if (roll < whaleShare) {
+                tokens = 100 + random.nextInt(500);
+                whales++;
+            } else if (roll < whaleShare + holderShare) {
+                // Geometric: most small holders own one token, a few own several
+                tokens = 1;
+                while (tokens < 20 && random.nextDouble() < 0.4) {
+                    tokens++;
+                }
+                holders++;
+            } else {
+                continue;
+            }
+            for (int t = 0; t < tokens; t++) {
+                batch.add(new Object[] {wallets.address(i), String.valueOf(nextToken++)});
+                if (batch.size() == BATCH_SIZE) {
+                    jdbc.batchUpdate("INSERT INTO nft_owners (owner_id, nft_id) VALUES (?, ?)", batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO nft_owners (owner_id, nft_id) VALUES (?, ?)", batch);
+        }
+
+        int rows = nextToken - 1;
+        System.out.println("Seeded nft_owners: " + rows + " tokens, " + whales + " whales, " + holders
+            + " small holders, " + (wallets.size() - whales - holders) + " wallets without NFTs");
+        return rows;
+    }
+}
@@ -0,0 +1,58 @@
+package com.yourapp.services;
+
+import com.yourapp.benchmarks.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature verification: full ecrecover round trip through the verification pool,
+ * signature parsing alone, and the pre-recovery rejection of malformed input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthServiceBenchmark {
+
+    private AuthService authService;
+    private String address;
+    private String message;
+    private String signature;
+
+    @Setup
+    public void setup() {
+        authService = new AuthService();
+        BenchmarkSupport.setField(authService, "threads", 0);
+        BenchmarkSupport.setField(authService, "queueCapacity", 1024);
+        BenchmarkSupport.setField(authService, "timeoutMs", 10_000L);
+        authService.init();
+
+        String[] login = BenchmarkSupport.signedLogin("123456");
+        address = login[0];
+        message = login[1];
+        signature = login[2];
+    }
+
+    @TearDown
+    public void tearDown() {
+        authService.shutdown();
+    }
+
+    @Benchmark
+    public boolean verifySignature() {
+        return authService.verifySignature(message, signature, address);
+    }
+
+    @Benchmark
+    public Object parseSignature() {
+        return authService.parseSignature(signature);
+    }
+
+    @Benchmark
+    public boolean rejectMalformedSignature() {
+        return authService.verifySignature(message, "0x1234", address);
+    }
+}
@@ -0,0 +1,83 @@
+package com.yourapp.services;
+
+import com.yourapp.services.NftService.NftHolderInfo;
+import com.yourapp.services.NftService.TokenIdCollector;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ownership row handling for one wallet against an in-memory H2 nft_owners table:
+ * the original queryForList + boxed Integer path versus the streaming int[] collector.
+ * Run with -prof gc to compare allocation per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NftHolderQueryBenchmark {
+
+    private static final String WALLET = "0x52908400098527886e0f7030069857d2e4169ee7";
+
+    @Param({"3", "400"})
+    public int tokenCount;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource(
+            "jdbc:h2:mem:bench" + tokenCount + ";MODE=PostgreSQL", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE nft_owners (owner_id VARCHAR(42), nft_id VARCHAR(10))");
+        jdbcTemplate.execute("CREATE INDEX nft_owners_owner_id_idx ON nft_owners (owner_id)");
+        for (int i = 0; i < tokenCount; i++) {
+            jdbcTemplate.update("INSERT INTO nft_owners VALUES (?, ?)", WALLET, String.valueOf(tokenCount * 7 - i * 7));
+        }
+        // Other holders, so the lookup is selective
+        for (int i = 0; i < 2000; i++) {
+            jdbcTemplate.update("INSERT INTO nft_owners VALUES (?, ?)",
+                String.format("0x%040x", i + 1), String.valueOf(100_000 + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    // NftService.getNftHolderInfo before the int[] holder (plus its separate COUNT query)
+    @Benchmark
+    public Object listOfMapsWithCount() {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM nft_owners WHERE LOWER(owner_id) = LOWER(?)", Integer.class, WALLET);
+        List<Map<String, Object>> results = jdbcTemplate.queryForList(
+            "SELECT nft_id FROM nft_owners WHERE LOWER(owner_id) = LOWER(?) ORDER BY CAST(nft_id AS INTEGER) ASC", WALLET);
+        List<Integer> nftIds = new ArrayList<>();
+        for (Map<String, Object> row : results) {
+            String id = (String) row.get("nft_id");
+            if (id != null) {
+                nftIds.add(Integer.parseInt(id));
+            }
+        }
+        return count + nftIds.size();
+    }
+
+    @Benchmark
+    public Object streamingIntArray() {
+        TokenIdCollector collector = new TokenIdCollector();
+        jdbcTemplate.query("SELECT nft_id FROM nft_owners WHERE owner_id = ?", collector, WALLET);
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(WALLET);
+        info.setNftIds(collector.toArray());
+        return info;
+    }
+}
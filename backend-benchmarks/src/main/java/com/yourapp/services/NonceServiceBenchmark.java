@@ -0,0 +1,51 @@
+package com.yourapp.services;
+
+import com.yourapp.benchmarks.BenchmarkSupport;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nonce issue + consume under contention: every thread generates a nonce for its own
+ * address and immediately validates it, like a burst of concurrent logins.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class NonceServiceBenchmark {
+
+    private NonceService nonceService;
+
+    @State(Scope.Thread)
+    public static class Wallet {
+        String address;
+
+        @Setup
+        public void setup() {
+            address = "0x" + Long.toHexString(Thread.currentThread().getId()) + "a".repeat(38);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        nonceService = new NonceService();
+        BenchmarkSupport.setField(nonceService, "maxEntries", 100_000);
+        BenchmarkSupport.setField(nonceService, "tickMillis", 1000L);
+        nonceService.init();
+    }
+
+    @Benchmark
+    public String generateNonce(Wallet wallet) {
+        return nonceService.generateNonce(wallet.address);
+    }
+
+    @Benchmark
+    public boolean generateAndValidateNonce(Wallet wallet) {
+        String nonce = nonceService.generateNonce(wallet.address);
+        return nonceService.validateNonce(wallet.address, nonce);
+    }
+}
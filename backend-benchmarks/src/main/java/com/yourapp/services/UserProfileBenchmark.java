@@ -0,0 +1,111 @@
+package com.yourapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourapp.models.TokenSet;
+import com.yourapp.models.User;
+import com.yourapp.services.NftService.NftHolderInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-login user bookkeeping: tier calculation and profile customization, the owned-token
+ * check in updatePrimaryNft (legacy CSV split vs TokenSet), and serializing the
+ * HashMap-based profile response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserProfileBenchmark {
+
+    @Param({"3", "60", "400"})
+    public int tokenCount;
+
+    private UserService userService;
+    private NftHolderInfo holderInfo;
+    private User user;
+    private String csv;
+    private int lookupId;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        userService = new UserService(null, null, null, null, null, null);
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+
+        int[] ids = new int[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            ids[i] = 17 + i * 23;
+        }
+        holderInfo = new NftHolderInfo();
+        holderInfo.setWalletAddress("0x52908400098527886e0f7030069857d2e4169ee7");
+        holderInfo.setNftIds(ids);
+        lookupId = ids[ids.length - 1];
+
+        user = new User();
+        user.setAddress(holderInfo.getWalletAddress());
+        user.setLastLogin(LocalDateTime.now());
+        user.setHasNft(true);
+        user.setNftCount(tokenCount);
+        user.setNftTokenSet(TokenSet.of(ids));
+        user.setPrimaryNftId(ids[0]);
+        user.calculateHolderTier();
+        csv = user.getNftTokens();
+    }
+
+    @Benchmark
+    public Object calculateTierAndCustomization() {
+        user.calculateHolderTier();
+        userService.setProfileCustomization(user, holderInfo);
+        return user.getProfileBadge();
+    }
+
+    // The ownership check as updatePrimaryNft did it before TokenSet
+    @Benchmark
+    public boolean csvSplitContains() {
+        String[] ownedNfts = csv.split(",");
+        for (String nft : ownedNfts) {
+            if (nft.trim().equals(String.valueOf(lookupId))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean tokenSetParseAndContains() {
+        return TokenSet.parseCsv(csv).contains(lookupId);
+    }
+
+    @Benchmark
+    public boolean tokenSetContains() {
+        return user.getNftTokenSet().contains(lookupId);
+    }
+
+    @Benchmark
+    public byte[] tokenSetEncode() {
+        return user.getNftTokenSet().encode();
+    }
+
+    @Benchmark
+    public byte[] serializeProfileResponse() throws Exception {
+        Map<String, Object> profile = new HashMap<>();
+        profile.put("address", user.getAddress());
+        profile.put("hasNft", user.getHasNft());
+        profile.put("nftCount", user.getNftCount());
+        profile.put("nftTokens", user.getNftTokens());
+        profile.put("primaryNftId", user.getPrimaryNftId());
+        profile.put("holderTier", user.getHolderTier());
+        profile.put("profileBackground", user.getProfileBackground());
+        profile.put("profileBadge", user.getProfileBadge());
+        profile.put("createdAt", user.getCreatedAt());
+        profile.put("lastLogin", user.getLastLogin());
+        return objectMapper.writeValueAsBytes(profile);
+    }
+}
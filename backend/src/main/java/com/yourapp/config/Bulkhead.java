@@ -0,0 +1,113 @@
+package com.yourapp.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Semaphore bulkhead in front of a connection pool.
+ *
+ * At most maxConcurrent callers run at once; up to maxWaiting more wait (in FIFO order)
+ * for at most maxWaitMillis. Everyone else is rejected straight away with
+ * {@link BulkheadFullException}, so a burst queues on a cheap semaphore instead of
+ * piling up inside the pool, and sheds predictably when the queue is full.
+ *
+ * Not reentrant: a call must not enter the same bulkhead again.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public Bulkhead(String name, boolean enabled, int maxConcurrent, int maxWaiting, long maxWaitMillis) {
+        this.name = name;
+        this.enabled = enabled;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            admitted.increment();
+            return;
+        }
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            rejectedQueueFull.increment();
+            throw new BulkheadFullException(name + " bulkhead is full");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                rejectedTimeout.increment();
+                throw new BulkheadFullException(name + " bulkhead wait timed out");
+            }
+            admitted.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException(name + " bulkhead wait interrupted");
+        } finally {
+            waiting.decrementAndGet();
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long total = admitted.sum();
+        stats.put("enabled", enabled);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("inFlight", maxConcurrent - permits.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("maxWaiting", maxWaiting);
+        stats.put("admitted", total);
+        stats.put("rejectedQueueFull", rejectedQueueFull.sum());
+        stats.put("rejectedTimeout", rejectedTimeout.sum());
+        stats.put("avgWaitMillis", total == 0 ? 0.0 : waitNanos.sum() / total / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * Thrown when a call could not get a permit; callers should answer 503
+     */
+    public static class BulkheadFullException extends RuntimeException {
+        public BulkheadFullException(String message) {
+            super(message);
+        }
+    }
+}
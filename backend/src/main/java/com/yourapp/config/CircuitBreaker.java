@@ -0,0 +1,185 @@
+package com.yourapp.config;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker in front of a dependency that can hang or fail.
+ *
+ * CLOSED: calls go through; failureThreshold consecutive failures open the circuit. A call
+ * that succeeds but takes longer than slowCallMillis counts as a failure, so a database
+ * that answers only after the driver's timeouts trips it as well as one that errors.
+ * OPEN: calls are rejected straight away with {@link CircuitOpenException} for openMillis.
+ * HALF_OPEN: up to halfOpenProbes calls go through as probes; a successful probe closes
+ * the circuit, a failed one opens it again for another openMillis.
+ *
+ * Exceptions thrown by the action are rethrown unchanged after being counted.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long slowCallMillis;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger probesInFlight = new AtomicInteger();
+    // System.nanoTime() when the circuit last opened; written before the state changes to OPEN
+    private volatile long openedAt;
+    private volatile LocalDateTime lastOpened;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    public CircuitBreaker(String name, boolean enabled, int failureThreshold, long slowCallMillis,
+                          long openMillis, int halfOpenProbes) {
+        this.name = name;
+        this.enabled = enabled;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.slowCallMillis = slowCallMillis;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = Math.max(halfOpenProbes, 1);
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        boolean probe = acquire();
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            if (slowCallMillis > 0 && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > slowCallMillis) {
+                slowCalls.increment();
+                onFailure(probe);
+            } else {
+                onSuccess(probe);
+            }
+            return result;
+        } catch (RuntimeException | Error e) {
+            onFailure(probe);
+            throw e;
+        } finally {
+            if (probe) {
+                probesInFlight.decrementAndGet();
+            }
+        }
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return true if the call is a half-open probe
+     */
+    private boolean acquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if (current == State.OPEN) {
+            long remaining = openMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openedAt);
+            if (remaining > 0) {
+                rejected.increment();
+                throw new CircuitOpenException(name + " circuit is open", remaining);
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                System.out.println(name + " circuit half-open, probing");
+            }
+        }
+        if (probesInFlight.incrementAndGet() > halfOpenProbes) {
+            probesInFlight.decrementAndGet();
+            rejected.increment();
+            throw new CircuitOpenException(name + " circuit is half-open, probe in progress", 0);
+        }
+        return true;
+    }
+
+    private void onSuccess(boolean probe) {
+        succeeded.increment();
+        consecutiveFailures.set(0);
+        if (probe && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            System.out.println(name + " circuit closed");
+        }
+    }
+
+    private void onFailure(boolean probe) {
+        failed.increment();
+        if (probe) {
+            trip(State.HALF_OPEN);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            trip(State.CLOSED);
+        }
+    }
+
+    private void trip(State from) {
+        long now = System.nanoTime();
+        if (state.get() != from) {
+            return;
+        }
+        openedAt = now;
+        if (state.compareAndSet(from, State.OPEN)) {
+            consecutiveFailures.set(0);
+            opened.increment();
+            lastOpened = LocalDateTime.now();
+            System.err.println(name + " circuit opened for " + openMillis + "ms"
+                + (from == State.HALF_OPEN ? " after a failed probe" : " after " + failureThreshold + " consecutive failures"));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("state", state.get().name());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("failureThreshold", failureThreshold);
+        stats.put("slowCallMillis", slowCallMillis);
+        stats.put("openMillis", openMillis);
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("slowCalls", slowCalls.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("opened", opened.sum());
+        stats.put("lastOpened", lastOpened);
+        return stats;
+    }
+
+    /**
+     * Thrown instead of calling the dependency while the circuit is open;
+     * callers should fall back to data they already have
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        private final long retryAfterMillis;
+
+        public CircuitOpenException(String message, long retryAfterMillis) {
+            super(message);
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+}
@@ -23,6 +23,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 )
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("Server-Timing", "Retry-After")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
@@ -37,6 +38,8 @@ public class CorsConfig implements WebMvcConfigurer {
         configuration.addAllowedOrigin("http://localhost:5500");
         configuration.addAllowedMethod("*");
         configuration.addAllowedHeader("*");
+        configuration.addExposedHeader("Server-Timing");
+        configuration.addExposedHeader("Retry-After");
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,69 @@
+package com.yourapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bulkheads for the two databases. Permits default to the pool sizes, so callers
+ * beyond what the pools can serve wait on the semaphore (bounded in count and time)
+ * rather than on Hikari's connection timeout.
+ */
+@Component
+public class DatabaseBulkheads {
+
+    @Value("${db.bulkhead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${db.bulkhead.users.max-concurrent:${spring.datasource.hikari.maximum-pool-size:2}}")
+    private int usersMaxConcurrent;
+
+    @Value("${db.bulkhead.users.max-waiting:1000}")
+    private int usersMaxWaiting;
+
+    @Value("${db.bulkhead.users.max-wait-ms:5000}")
+    private long usersMaxWaitMs;
+
+    @Value("${db.bulkhead.subsquid.max-concurrent:${subsquid.db.pool.maximum-pool-size:3}}")
+    private int subsquidMaxConcurrent;
+
+    @Value("${db.bulkhead.subsquid.max-waiting:1000}")
+    private int subsquidMaxWaiting;
+
+    @Value("${db.bulkhead.subsquid.max-wait-ms:${subsquid.db.pool.connection-timeout:3000}}")
+    private long subsquidMaxWaitMs;
+
+    private Bulkhead users;
+    private Bulkhead subsquid;
+
+    @PostConstruct
+    public void init() {
+        users = new Bulkhead("users-db", enabled, usersMaxConcurrent, usersMaxWaiting, usersMaxWaitMs);
+        subsquid = new Bulkhead("subsquid-db", enabled, subsquidMaxConcurrent, subsquidMaxWaiting, subsquidMaxWaitMs);
+    }
+
+    /**
+     * Main users database (JPA repositories)
+     */
+    public Bulkhead users() {
+        return users;
+    }
+
+    /**
+     * Subsquid ownership database
+     */
+    public Bulkhead subsquid() {
+        return subsquid;
+    }
+
+    public Map<String, Object> getUsersStats() {
+        return users.getStats();
+    }
+
+    public Map<String, Object> getSubsquidStats() {
+        return subsquid.getStats();
+    }
+}
@@ -0,0 +1,40 @@
+package com.yourapp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Maps the auth, user and NFT endpoints to their {@link RateLimiter} groups
+ */
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitConfig(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!rateLimiter.isEnabled()) {
+            return;
+        }
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, RateLimiter.AUTH_NONCE))
+            .addPathPatterns("/api/auth/nonce");
+        // Each verify costs an ecrecover, an ownership lookup and a users write
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, RateLimiter.AUTH_VERIFY))
+            .addPathPatterns("/api/auth/verify-signature");
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, RateLimiter.USER_WRITE))
+            .addPathPatterns("/api/user/primary-nft", "/api/user/refresh-nfts/**");
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, RateLimiter.USER_BATCH))
+            .addPathPatterns("/api/user/nfts/batch");
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, RateLimiter.USER_READ))
+            .addPathPatterns("/api/auth/profile/**", "/api/user/**")
+            .excludePathPatterns("/api/user/primary-nft", "/api/user/refresh-nfts/**", "/api/user/nfts/batch");
+        // Images and metadata: a cache miss costs a gateway fetch or an ownership lookup
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, RateLimiter.NFT_READ))
+            .addPathPatterns("/api/nft/**");
+    }
+}
@@ -0,0 +1,43 @@
+package com.yourapp.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Applies one {@link RateLimiter} group to the requests it is mapped to: always per client IP,
+ * and per wallet address when the address is in the path ({address}) or the query (?address=).
+ * Addresses sent in a request body are checked by the controller itself.
+ *
+ * The client IP is request.getRemoteAddr(); behind a reverse proxy, set
+ * server.forward-headers-strategy=native so that is the caller rather than the proxy.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+    private final String group;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, String group) {
+        this.rateLimiter = rateLimiter;
+        this.group = group;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // CORS preflights are answered before the real request is counted
+        if ("OPTIONS".equals(request.getMethod())) {
+            return true;
+        }
+        rateLimiter.acquireIp(group, request.getRemoteAddr());
+
+        String address = request.getParameter("address");
+        if (address == null && request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE) instanceof Map<?, ?> variables) {
+            address = (String) variables.get("address");
+        }
+        rateLimiter.acquireAddress(group, address);
+        return true;
+    }
+}
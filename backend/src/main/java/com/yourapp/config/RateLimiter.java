@@ -0,0 +1,342 @@
+package com.yourapp.config;
+
+import com.yourapp.services.NftService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory request rate limits per endpoint group, keyed by client IP and by wallet address.
+ *
+ * Each key is a token bucket stored as a single AtomicLong (GCRA: the time at which the
+ * bucket will be full again), so a check is one compare-and-set with no locks. A bucket
+ * that has refilled is indistinguishable from a new one, so the sweeper simply drops it.
+ * At max-keys, a new key first evicts refilled buckets; if none are idle the request is let
+ * through untracked, within the limit's overflow cap, so a flood of fresh keys can't make
+ * every new client share one bucket. IPv6 clients are keyed by their /64.
+ *
+ * Limits are "permits/seconds": up to permits requests at once, refilled evenly over seconds.
+ */
+@Component
+public class RateLimiter {
+
+    public static final String AUTH_NONCE = "auth-nonce";
+    public static final String AUTH_VERIFY = "auth-verify";
+    public static final String USER_READ = "user-read";
+    public static final String USER_WRITE = "user-write";
+    public static final String USER_BATCH = "user-batch";
+    public static final String NFT_READ = "nft-read";
+
+    public static final String BY_IP = "ip";
+    public static final String BY_ADDRESS = "address";
+
+    // Least time between inline evictions of refilled buckets when a limit is full
+    private static final long EVICT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ratelimit.max-keys:100000}")
+    private int maxKeys;
+
+    // Requests per limit admitted without a bucket of their own while it is at max-keys
+    @Value("${ratelimit.overflow:600/10}")
+    private String overflow;
+
+    @Value("${ratelimit.auth-nonce.ip:30/60}")
+    private String authNonceIp;
+
+    @Value("${ratelimit.auth-nonce.address:10/60}")
+    private String authNonceAddress;
+
+    @Value("${ratelimit.auth-verify.ip:20/60}")
+    private String authVerifyIp;
+
+    @Value("${ratelimit.auth-verify.address:5/60}")
+    private String authVerifyAddress;
+
+    @Value("${ratelimit.user-read.ip:600/60}")
+    private String userReadIp;
+
+    @Value("${ratelimit.user-write.ip:30/60}")
+    private String userWriteIp;
+
+    @Value("${ratelimit.user-write.address:10/60}")
+    private String userWriteAddress;
+
+    @Value("${ratelimit.user-batch.ip:20/60}")
+    private String userBatchIp;
+
+    @Value("${ratelimit.nft-read.ip:1200/60}")
+    private String nftReadIp;
+
+    // "group.dimension" -> limit; groups without an entry for a dimension are not limited by it
+    private final Map<String, Limit> limits = new LinkedHashMap<>();
+
+    private LongSupplier clock = System::nanoTime;
+
+    @PostConstruct
+    public void init() {
+        register(AUTH_NONCE, BY_IP, authNonceIp);
+        register(AUTH_NONCE, BY_ADDRESS, authNonceAddress);
+        register(AUTH_VERIFY, BY_IP, authVerifyIp);
+        register(AUTH_VERIFY, BY_ADDRESS, authVerifyAddress);
+        register(USER_READ, BY_IP, userReadIp);
+        register(USER_WRITE, BY_IP, userWriteIp);
+        register(USER_WRITE, BY_ADDRESS, userWriteAddress);
+        register(USER_BATCH, BY_IP, userBatchIp);
+        register(NFT_READ, BY_IP, nftReadIp);
+    }
+
+    private void register(String group, String dimension, String spec) {
+        if (spec == null || spec.isBlank()) {
+            return;
+        }
+        Rate rate = Rate.parse("ratelimit." + group + "." + dimension, spec);
+        limits.put(group + "." + dimension, new Limit(rate, Rate.parse("ratelimit.overflow", overflow)));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take one permit for a client IP
+     *
+     * @throws RateLimitedException if the bucket is empty
+     */
+    public void acquireIp(String group, String ip) {
+        acquire(group, BY_IP, ipKey(ip));
+    }
+
+    /**
+     * Take one permit for a wallet address (normalized here, so case variants share a bucket)
+     *
+     * @throws RateLimitedException if the bucket is empty
+     */
+    public void acquireAddress(String group, String address) {
+        if (address != null && !address.isBlank()) {
+            acquire(group, BY_ADDRESS, NftService.normalizeAddress(address));
+        }
+    }
+
+    private void acquire(String group, String dimension, String key) {
+        if (!enabled || key == null) {
+            return;
+        }
+        Limit limit = limits.get(group + "." + dimension);
+        if (limit == null) {
+            return;
+        }
+        long waitNanos = limit.tryAcquire(key, clock.getAsLong());
+        if (waitNanos > 0) {
+            throw new RateLimitedException(group + " limit reached for " + dimension,
+                Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+    }
+
+    /**
+     * Drop buckets that have refilled completely; they carry no state a new bucket wouldn't
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = clock.getAsLong();
+        for (Limit limit : limits.values()) {
+            limit.evictIdle(now);
+        }
+    }
+
+    /**
+     * Bucket key for a client IP: IPv6 addresses are cut to their /64, which a single
+     * client typically holds whole; IPv4 (including IPv4-mapped) addresses are kept as-is
+     */
+    static String ipKey(String ip) {
+        if (ip == null || ip.indexOf(':') < 0) {
+            return ip;
+        }
+        try {
+            // A literal containing ':' is parsed, never resolved
+            InetAddress address = InetAddress.getByName(ip);
+            if (address instanceof Inet6Address) {
+                return HexFormat.of().formatHex(address.getAddress(), 0, 8) + "::/64";
+            }
+            return address.getHostAddress();
+        } catch (UnknownHostException e) {
+            return ip;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long keys = 0;
+        long allowed = 0;
+        long limited = 0;
+        Map<String, Object> byLimit = new LinkedHashMap<>();
+        for (Map.Entry<String, Limit> entry : limits.entrySet()) {
+            Limit limit = entry.getValue();
+            keys += limit.buckets.size();
+            allowed += limit.allowed.sum();
+            limited += limit.limited.sum();
+            byLimit.put(entry.getKey(), limit.getStats());
+        }
+        stats.put("enabled", enabled);
+        stats.put("keys", keys);
+        stats.put("maxKeys", maxKeys);
+        stats.put("allowed", allowed);
+        stats.put("limited", limited);
+        stats.put("limits", byLimit);
+        return stats;
+    }
+
+    /**
+     * A "permits/seconds" spec. A bucket holds the System.nanoTime() at which it is full
+     * again; each permit pushes that interval further out, and a request is refused when
+     * it would land more than (permits - 1) intervals in the future.
+     */
+    private static final class Rate {
+        final int permits;
+        final long seconds;
+        final long intervalNanos;
+        final long toleranceNanos;
+
+        Rate(int permits, long seconds) {
+            this.permits = permits;
+            this.seconds = seconds;
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(seconds) / permits;
+            this.toleranceNanos = intervalNanos * (permits - 1);
+        }
+
+        static Rate parse(String property, String spec) {
+            String[] parts = spec.trim().split("/");
+            int permits;
+            long seconds;
+            try {
+                permits = Integer.parseInt(parts[0].trim());
+                seconds = parts.length > 1 ? Long.parseLong(parts[1].trim()) : 1;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(property + " must look like <permits>/<seconds>, got " + spec);
+            }
+            if (permits <= 0 || seconds <= 0 || parts.length > 2) {
+                throw new IllegalArgumentException(property + " must look like <permits>/<seconds>, got " + spec);
+            }
+            return new Rate(permits, seconds);
+        }
+
+        /**
+         * @return 0 if a permit was taken, otherwise nanoseconds until one is available
+         */
+        long take(AtomicLong bucket, long now) {
+            while (true) {
+                long fullAt = bucket.get();
+                long start = fullAt - now > 0 ? fullAt : now;
+                long wait = start - now - toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return permits + "/" + seconds + "s";
+        }
+    }
+
+    /**
+     * One limit, its buckets, and the shared cap for keys it has no room to track
+     */
+    private class Limit {
+        private final Rate rate;
+        private final Rate overflowRate;
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong overflowBucket;
+        private final AtomicLong lastEvict;
+        private final LongAdder allowed = new LongAdder();
+        private final LongAdder limited = new LongAdder();
+        private final LongAdder overflowed = new LongAdder();
+        private final LongAdder evicted = new LongAdder();
+
+        Limit(Rate rate, Rate overflowRate) {
+            this.rate = rate;
+            this.overflowRate = overflowRate;
+            long now = clock.getAsLong();
+            this.overflowBucket = new AtomicLong(now);
+            this.lastEvict = new AtomicLong(now - EVICT_INTERVAL_NANOS);
+        }
+
+        /**
+         * @return 0 if a permit was taken, otherwise nanoseconds until one is available
+         */
+        long tryAcquire(String key, long now) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null && buckets.size() >= maxKeys) {
+                long last = lastEvict.get();
+                if (now - last >= EVICT_INTERVAL_NANOS && lastEvict.compareAndSet(last, now)) {
+                    evictIdle(now);
+                }
+                if (buckets.size() >= maxKeys) {
+                    overflowed.increment();
+                    return count(overflowRate.take(overflowBucket, now));
+                }
+            }
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            return count(rate.take(bucket, now));
+        }
+
+        private long count(long wait) {
+            (wait > 0 ? limited : allowed).increment();
+            return wait;
+        }
+
+        void evictIdle(long now) {
+            int before = buckets.size();
+            buckets.values().removeIf(fullAt -> fullAt.get() - now <= 0);
+            evicted.add(Math.max(0, before - buckets.size()));
+        }
+
+        Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", rate.toString());
+            stats.put("keys", buckets.size());
+            stats.put("allowed", allowed.sum());
+            stats.put("limited", limited.sum());
+            stats.put("overflowed", overflowed.sum());
+            stats.put("evicted", evicted.sum());
+            return stats;
+        }
+    }
+
+    /**
+     * Thrown when a client is over its limit; callers should answer 429 with Retry-After
+     */
+    public static class RateLimitedException extends RuntimeException {
+        private final long retryAfterSeconds;
+
+        public RateLimitedException(String message, long retryAfterSeconds) {
+            super(message);
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+}
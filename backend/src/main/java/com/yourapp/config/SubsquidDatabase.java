@@ -0,0 +1,237 @@
+package com.yourapp.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Owns the connection pool for the Subsquid (NFT ownership) database.
+ *
+ * The pool is deliberately not exposed as a {@link DataSource} bean so that
+ * Spring Boot keeps auto-configuring the main users datasource.
+ */
+@Component
+public class SubsquidDatabase {
+
+    private static final String INDEX_DDL_SCRIPT = "db/subsquid/nft_owners_indexes.sql";
+
+    @Value("${subsquid.db.url:jdbc:postgresql://localhost:5433/postgres}")
+    private String url;
+
+    @Value("${subsquid.db.username:postgres}")
+    private String username;
+
+    @Value("${subsquid.db.password:postgres}")
+    private String password;
+
+    @Value("${subsquid.db.driver-class-name:org.postgresql.Driver}")
+    private String driverClassName;
+
+    // Keep this small - Supabase caps connections per project, and the main pool uses 2
+    @Value("${subsquid.db.pool.maximum-pool-size:3}")
+    private int maximumPoolSize;
+
+    @Value("${subsquid.db.pool.minimum-idle:1}")
+    private int minimumIdle;
+
+    // How long a caller may wait in the pool queue for a free connection
+    @Value("${subsquid.db.pool.connection-timeout:3000}")
+    private long connectionTimeoutMs;
+
+    @Value("${subsquid.db.pool.idle-timeout:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${subsquid.db.pool.max-lifetime:1800000}")
+    private long maxLifetimeMs;
+
+    // Per-query deadline, enforced by the driver with a cancel request
+    @Value("${subsquid.db.query-timeout-seconds:5}")
+    private int queryTimeoutSeconds;
+
+    // Executions before pgjdbc switches to a named server-side prepared statement (0 disables)
+    @Value("${subsquid.db.prepare-threshold:5}")
+    private int prepareThreshold;
+
+    @Value("${subsquid.db.prepared-statement-cache-queries:256}")
+    private int preparedStatementCacheQueries;
+
+    // Create the nft_owners lookup indexes at startup (needs CREATE privilege on the Subsquid schema)
+    @Value("${subsquid.db.apply-index-ddl:false}")
+    private boolean applyIndexDdl;
+
+    private final AcquireTimeTracker acquireTimeTracker = new AcquireTimeTracker();
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void init() {
+        try {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("subsquid");
+            config.setDriverClassName(driverClassName);
+            config.setJdbcUrl(url);
+            config.setUsername(username);
+            config.setPassword(password);
+            config.setMaximumPoolSize(maximumPoolSize);
+            config.setMinimumIdle(Math.min(minimumIdle, maximumPoolSize));
+            config.setConnectionTimeout(connectionTimeoutMs);
+            config.setIdleTimeout(idleTimeoutMs);
+            config.setMaxLifetime(maxLifetimeMs);
+            config.setReadOnly(true);
+            config.setRegisterMbeans(true);
+            config.setMetricsTrackerFactory(acquireTimeTracker);
+            // Start even if Subsquid is down; connections are opened once it answers
+            config.setInitializationFailTimeout(-1);
+
+            // Driver-level settings: statement reuse, and a socket timeout as a backstop
+            // for the query timeout in case the cancel request never reaches the server
+            config.addDataSourceProperty("prepareThreshold", prepareThreshold);
+            config.addDataSourceProperty("preparedStatementCacheQueries", preparedStatementCacheQueries);
+            config.addDataSourceProperty("socketTimeout", queryTimeoutSeconds * 2 + 5);
+            config.addDataSourceProperty("ApplicationName", "computerchan-backend");
+
+            this.dataSource = new HikariDataSource(config);
+
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            template.setQueryTimeout(queryTimeoutSeconds);
+            this.jdbcTemplate = template;
+        } catch (Exception e) {
+            System.err.println("Warning: Could not create Subsquid connection pool: " + e.getMessage());
+            System.err.println("NFT functionality will be limited. Using fallback data.");
+            close();
+            this.jdbcTemplate = null;
+            return;
+        }
+
+        try {
+            // Test the connection
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            if (applyIndexDdl) {
+                applyIndexDdl();
+            }
+            System.out.println("Subsquid connection pool initialized (max " + maximumPoolSize + " connections)");
+        } catch (Exception e) {
+            // The pool stays up: the Subsquid circuit breaker serves fallback data and
+            // probes until the database answers again
+            System.err.println("Warning: Could not connect to Subsquid database: " + e.getMessage());
+            System.err.println("NFT lookups will use fallback data until it is reachable.");
+        }
+    }
+
+    /**
+     * Runs db/subsquid/nft_owners_indexes.sql. Statements are idempotent and use
+     * CREATE INDEX CONCURRENTLY, so they run outside a transaction.
+     */
+    private void applyIndexDdl() {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(false);
+            connection.setAutoCommit(true);
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource(INDEX_DDL_SCRIPT));
+            System.out.println("Subsquid nft_owners indexes are in place");
+        } catch (Exception e) {
+            System.err.println("Warning: Could not apply Subsquid index DDL: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataSource != null) {
+            dataSource.close();
+            dataSource = null;
+        }
+    }
+
+    /**
+     * True once the pool exists, whether or not Subsquid is reachable right now:
+     * callers go through NftService's circuit breaker to find that out.
+     */
+    public boolean isAvailable() {
+        return jdbcTemplate != null;
+    }
+
+    /**
+     * JdbcTemplate bound to the pool with the per-query timeout applied,
+     * or null when the pool could not be created.
+     */
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public int getQueryTimeoutSeconds() {
+        return queryTimeoutSeconds;
+    }
+
+    /**
+     * Snapshot of pool usage: active/idle/waiting connections and acquire latency.
+     */
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("available", isAvailable());
+        stats.put("maxPoolSize", maximumPoolSize);
+
+        HikariDataSource ds = dataSource;
+        HikariPoolMXBean pool = ds != null ? ds.getHikariPoolMXBean() : null;
+        stats.put("active", pool != null ? pool.getActiveConnections() : 0);
+        stats.put("idle", pool != null ? pool.getIdleConnections() : 0);
+        stats.put("waiting", pool != null ? pool.getThreadsAwaitingConnection() : 0);
+        stats.put("total", pool != null ? pool.getTotalConnections() : 0);
+
+        long acquired = acquireTimeTracker.acquireCount.sum();
+        stats.put("acquireCount", acquired);
+        stats.put("acquireTimeouts", acquireTimeTracker.timeoutCount.sum());
+        stats.put("acquireAvgMillis", acquired == 0 ? 0.0
+            : TimeUnit.NANOSECONDS.toMicros(acquireTimeTracker.acquireNanos.sum() / acquired) / 1000.0);
+        stats.put("acquireMaxMillis", TimeUnit.NANOSECONDS.toMicros(acquireTimeTracker.maxAcquireNanos.get()) / 1000.0);
+        return stats;
+    }
+
+    /**
+     * Hikari metrics hook that accumulates connection acquire times.
+     */
+    private static class AcquireTimeTracker implements MetricsTrackerFactory, IMetricsTracker {
+        final LongAdder acquireCount = new LongAdder();
+        final LongAdder acquireNanos = new LongAdder();
+        final LongAdder timeoutCount = new LongAdder();
+        final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+
+        @Override
+        public IMetricsTracker create(String poolName, PoolStats poolStats) {
+            return this;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeoutCount.increment();
+        }
+    }
+}
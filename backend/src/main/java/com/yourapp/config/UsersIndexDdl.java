@@ -0,0 +1,53 @@
+package com.yourapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Creates the users indexes in db/users/users_indexes.sql once the application is up,
+ * after ddl-auto has created or updated the table. PostgreSQL only.
+ */
+@Component
+public class UsersIndexDdl {
+
+    private static final String INDEX_DDL_SCRIPT = "db/users/users_indexes.sql";
+
+    private final DataSource dataSource;
+
+    @Value("${users.apply-index-ddl:true}")
+    private boolean enabled;
+
+    public UsersIndexDdl(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Statements are idempotent and use CREATE INDEX CONCURRENTLY, so they run outside
+     * a transaction and don't block logins while an index builds
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void apply() {
+        if (!enabled) {
+            return;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (!"PostgreSQL".equals(product)) {
+                System.out.println("Users database is " + product + ", skipping users index DDL");
+                return;
+            }
+            connection.setAutoCommit(true);
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource(INDEX_DDL_SCRIPT));
+            System.out.println("Users indexes are in place");
+        } catch (Exception e) {
+            System.err.println("Warning: Could not apply users index DDL: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.yourapp.controllers;
+
+import com.yourapp.config.Bulkhead.BulkheadFullException;
+import com.yourapp.config.RateLimiter.RateLimitedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * A database bulkhead shed the request: tell the client to back off briefly
+     */
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<?> handleBulkheadFull(BulkheadFullException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Server busy, please retry");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(errorResponse);
+    }
+
+    /**
+     * The client is over its rate limit: tell it when the next request will be accepted
+     */
+    @ExceptionHandler(RateLimitedException.class)
+    public ResponseEntity<?> handleRateLimited(RateLimitedException e) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Too many requests, please retry later");
+        errorResponse.put("retryAfterSeconds", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+            .body(errorResponse);
+    }
+}
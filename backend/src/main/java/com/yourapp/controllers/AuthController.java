@@ -1,16 +1,32 @@
 package com.yourapp.controllers;
 
+import com.yourapp.config.Bulkhead.BulkheadFullException;
+import com.yourapp.config.RateLimiter;
+import com.yourapp.metrics.StageMetrics;
 import com.yourapp.models.User;
 import com.yourapp.services.AuthService;
+import com.yourapp.services.AuthService.VerificationRejectedException;
+import com.yourapp.services.NftService;
+import com.yourapp.services.NftService.NftHolderInfo;
+import com.yourapp.services.NftThumbnailService;
 import com.yourapp.services.NonceService;
 import com.yourapp.services.UserService;
+import com.yourapp.services.UserService.ProfileSnapshot;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -20,11 +36,32 @@ public class AuthController {
     private final AuthService authService;
     private final NonceService nonceService;
     private final UserService userService;
+    private final NftService nftService;
+    private final NftThumbnailService thumbnailService;
+    private final StageMetrics stageMetrics;
+    private final RateLimiter rateLimiter;
 
-    public AuthController(AuthService authService, NonceService nonceService, UserService userService) {
+    // Run the ownership lookup concurrently with signature recovery
+    @Value("${auth.pipeline.enabled:true}")
+    private boolean pipelineEnabled;
+
+    // Deadline for the prefetched ownership lookup, counted from when it was started
+    @Value("${auth.pipeline.ownership-timeout-ms:4000}")
+    private long ownershipTimeoutMs;
+
+    @Value("${users.profile-cache.max-age-seconds:0}")
+    private long profileMaxAgeSeconds;
+
+    public AuthController(AuthService authService, NonceService nonceService, UserService userService,
+                          NftService nftService, NftThumbnailService thumbnailService, StageMetrics stageMetrics,
+                          RateLimiter rateLimiter) {
         this.authService = authService;
         this.nonceService = nonceService;
         this.userService = userService;
+        this.nftService = nftService;
+        this.thumbnailService = thumbnailService;
+        this.stageMetrics = stageMetrics;
+        this.rateLimiter = rateLimiter;
     }
 
     @GetMapping("/ping")
@@ -45,23 +82,95 @@ public class AuthController {
 
     @PostMapping("/verify-signature")
     public ResponseEntity<?> verifySignature(@RequestBody SignatureRequest request) {
-        // Extract nonce from message
+        // The per-IP limit is applied before the body is read (RateLimitInterceptor)
+        rateLimiter.acquireAddress(RateLimiter.AUTH_VERIFY, request.getAddress());
+        
+        // Only checked here: the nonce is consumed once the signature is proven, so a 503
+        // from verification leaves it usable for the client's retry of the same message
         String nonce = extractNonceFromMessage(request.getMessage());
-        if (!nonceService.validateNonce(request.getAddress(), nonce)) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "Invalid or expired nonce");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        boolean nonceValid = stageMetrics.time(StageMetrics.NONCE,
+            () -> nonceService.checkNonce(request.getAddress(), nonce));
+        if (!nonceValid) {
+            return invalidNonceResponse();
+        }
+
+        // Malformed input can never verify, so it never gets to start a Subsquid lookup
+        if (!AuthService.isWellFormedAddress(request.getAddress())
+                || !AuthService.isWellFormedSignature(request.getSignature())) {
+            return invalidSignatureResponse();
+        }
+
+        // The nonce checks out: start the ownership lookup now so it overlaps ecrecover.
+        // Skipped while the change feed is trusted - returning users then need no lookup at all.
+        long ownershipStart = System.nanoTime();
+        AtomicLong ownershipNanos = new AtomicLong();
+        CompletableFuture<NftHolderInfo> prefetch = null;
+        CompletableFuture<NftHolderInfo> ownership = null;
+        if (pipelineEnabled && nftService.getChangeFeedTrustedSince() == null) {
+            prefetch = nftService.prefetchNftHolderInfo(request.getAddress());
+            if (prefetch != null) {
+                ownership = prefetch.whenComplete((info, error) -> ownershipNanos.set(System.nanoTime() - ownershipStart));
+            }
         }
 
-        boolean isValid = authService.verifySignature(request.getMessage(), request.getSignature(), request.getAddress());
+        boolean isValid;
+        try {
+            isValid = stageMetrics.time(StageMetrics.ECRECOVER,
+                () -> authService.verifySignature(request.getMessage(), request.getSignature(), request.getAddress()));
+        } catch (VerificationRejectedException e) {
+            discard(prefetch);
+            return busyResponse();
+        }
         if (!isValid) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "Invalid signature");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+            // Never act on ownership data for a login that failed verification
+            discard(prefetch);
+            return invalidSignatureResponse();
+        }
+
+        // Consume-once: a concurrent replay of the same message loses here.
+        // Every 503 from this point on puts the nonce back, so the retry can succeed.
+        long nonceExpiresAt = nonceService.consumeNonce(request.getAddress(), nonce);
+        if (nonceExpiresAt == 0) {
+            discard(prefetch);
+            return invalidNonceResponse();
+        }
+
+        NftHolderInfo nftInfo = null;
+        if (ownership != null) {
+            try {
+                long remaining = ownershipTimeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ownershipStart);
+                nftInfo = ownership.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+                stageMetrics.record(StageMetrics.OWNERSHIP, ownershipNanos.get());
+                // The login is proven: only now may the lookup populate the ownership caches
+                nftService.acceptPrefetched(nftInfo);
+            } catch (TimeoutException e) {
+                discard(prefetch);
+                nonceService.restoreNonce(request.getAddress(), nonce, nonceExpiresAt);
+                return busyResponse();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                nonceService.restoreNonce(request.getAddress(), nonce, nonceExpiresAt);
+                return busyResponse();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof BulkheadFullException bulkheadFull) {
+                    nonceService.restoreNonce(request.getAddress(), nonce, nonceExpiresAt);
+                    throw bulkheadFull;
+                }
+                // Anything else: let createOrUpdateUser look the wallet up inline
+            }
         }
 
         // Create or update user in database with NFT data from Subsquid
-        User user = userService.createOrUpdateUser(request.getAddress());
+        User user;
+        try {
+            user = userService.createOrUpdateUser(request.getAddress(), nftInfo);
+        } catch (BulkheadFullException e) {
+            nonceService.restoreNonce(request.getAddress(), nonce, nonceExpiresAt);
+            throw e;
+        }
+        
+        // Thumbnails for the desktop the user is about to open go ahead of the backfill
+        thumbnailService.prioritize(user.getNftTokenSet());
 
         Map<String, Object> successResponse = new HashMap<>();
         successResponse.put("success", true);
@@ -73,6 +182,8 @@ public class AuthController {
         successResponse.put("hasNft", user.getHasNft());
         successResponse.put("nftCount", user.getNftCount());
         successResponse.put("nftTokens", user.getNftTokens());
+        // Subsquid could not be read: the ownership above is what was last stored
+        successResponse.put("nftDataStale", user.isNftDataStale());
         
         // Profile customization data
         successResponse.put("primaryNftId", user.getPrimaryNftId());
@@ -85,9 +196,10 @@ public class AuthController {
         return ResponseEntity.ok(successResponse);
     }
     
+    // Shares the profile cache and ETag with /api/user/profile/{address}
     @GetMapping("/profile/{address}")
     public ResponseEntity<?> getProfile(@PathVariable String address) {
-        User user = userService.getUserByAddress(address);
+        ProfileSnapshot user = userService.getProfile(address);
         if (user == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
         }
@@ -102,10 +214,46 @@ public class AuthController {
         
         // NFT images are served from IPFS - frontend handles the URL construction
         
-        return ResponseEntity.ok(profile);
+        return ResponseEntity.ok()
+            .eTag(user.getETag())
+            .cacheControl(profileCacheControl())
+            .body(profile);
+    }
+
+    private CacheControl profileCacheControl() {
+        return profileMaxAgeSeconds > 0
+            ? CacheControl.maxAge(profileMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate()
+            : CacheControl.noCache().cachePrivate();
+    }
+
+    private static void discard(CompletableFuture<NftHolderInfo> prefetch) {
+        if (prefetch != null) {
+            prefetch.cancel(false);
+        }
+    }
+
+    private static ResponseEntity<?> invalidSignatureResponse() {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid signature");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+    }
+
+    private static ResponseEntity<?> invalidNonceResponse() {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Invalid or expired nonce");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+    }
+
+    private static ResponseEntity<?> busyResponse() {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Server busy, please retry");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "1")
+            .body(errorResponse);
     }
 
-    private String extractNonceFromMessage(String message) {
+    String extractNonceFromMessage(String message) {
+        if (message == null) return null;
         for (String line : message.split("\n")) {
             if (line.startsWith("Nonce:")) {
                 return line.split(":")[1].trim();
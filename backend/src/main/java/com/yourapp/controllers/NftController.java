@@ -0,0 +1,305 @@
+package com.yourapp.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourapp.metrics.StageMetrics;
+import com.yourapp.services.NftImageCache;
+import com.yourapp.services.NftImageCache.CachedImage;
+import com.yourapp.services.NftImageCache.ImageFetchException;
+import com.yourapp.services.NftMetadataService;
+import com.yourapp.services.NftService;
+import com.yourapp.services.NftThumbnailService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/nft")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173", "file://"})
+public class NftController {
+
+    // Tomcat request attributes for handing a file region to the connector (sendfile)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final byte[] ADDRESS_FIELD = "{\"address\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] TOKENS_FIELD = "\"tokens\":".getBytes(StandardCharsets.UTF_8);
+
+    private final NftImageCache imageCache;
+    private final NftThumbnailService thumbnailService;
+    private final NftMetadataService metadataService;
+    private final NftService nftService;
+    private final StageMetrics stageMetrics;
+    private final ObjectMapper objectMapper;
+
+    // Collection images never change, so clients may keep them for a year
+    @Value("${nft.images.max-age-seconds:31536000}")
+    private long imageMaxAgeSeconds;
+
+    // Metadata only changes with configuration (e.g. the image base URL)
+    @Value("${nft.metadata.max-age-seconds:86400}")
+    private long metadataMaxAgeSeconds;
+
+    // A wallet's holdings change with transfers; matches the ownership cache by default
+    @Value("${nft.metadata.wallet-max-age-seconds:60}")
+    private long walletMaxAgeSeconds;
+
+    @Value("${nft.metadata.max-batch-size:1000}")
+    private int metadataMaxBatchSize;
+
+    // How long a file handed to the connector for sendfile is kept from eviction
+    @Value("${nft.images.sendfile-pin-ms:30000}")
+    private long sendfilePinMs;
+
+    public NftController(NftImageCache imageCache, NftThumbnailService thumbnailService,
+                         NftMetadataService metadataService, NftService nftService,
+                         StageMetrics stageMetrics, ObjectMapper objectMapper) {
+        this.imageCache = imageCache;
+        this.thumbnailService = thumbnailService;
+        this.metadataService = metadataService;
+        this.nftService = nftService;
+        this.stageMetrics = stageMetrics;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Metadata of one token
+     */
+    @GetMapping("/metadata/{nftId}")
+    public ResponseEntity<?> getMetadata(@PathVariable int nftId) {
+        if (nftId < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid token ID"));
+        }
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(metadataMaxAgeSeconds, TimeUnit.SECONDS).cachePublic())
+            .body(metadataService.getNftMetadata(nftId));
+    }
+
+    /**
+     * Metadata of many tokens (?ids=1,2,3) as {"tokens":[...]}, in the order given
+     */
+    @GetMapping("/metadata")
+    public ResponseEntity<StreamingResponseBody> getMetadataBatch(@RequestParam String ids) throws IOException {
+        String[] parts = ids.split(",");
+        if (parts.length > metadataMaxBatchSize) {
+            return streamedError(HttpStatus.BAD_REQUEST, "Too many token IDs, maximum is " + metadataMaxBatchSize);
+        }
+        int[] nftIds = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                nftIds[i] = Integer.parseInt(parts[i].trim());
+                if (nftIds[i] < 0) {
+                    throw new NumberFormatException();
+                }
+            }
+        } catch (NumberFormatException e) {
+            return streamedError(HttpStatus.BAD_REQUEST, "ids must be comma-separated token IDs");
+        }
+        
+        StreamingResponseBody body = out -> {
+            out.write('{');
+            out.write(TOKENS_FIELD);
+            metadataService.writeMetadataArray(nftIds, out);
+            out.write('}');
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .cacheControl(CacheControl.maxAge(metadataMaxAgeSeconds, TimeUnit.SECONDS).cachePublic())
+            .body(body);
+    }
+
+    /**
+     * Metadata of every token a wallet holds, as {"address":...,"tokens":[...]}
+     */
+    @GetMapping("/metadata/wallet/{address}")
+    public ResponseEntity<StreamingResponseBody> getWalletMetadata(@PathVariable String address) throws IOException {
+        // Looked up before the response starts, so a busy database still maps to 503
+        int[] nftIds = stageMetrics.time(StageMetrics.OWNERSHIP,
+            () -> nftService.getNftHolderInfo(address).getNftIdArray());
+        byte[] addressJson = objectMapper.writeValueAsBytes(NftService.normalizeAddress(address));
+        
+        StreamingResponseBody body = out -> {
+            out.write(ADDRESS_FIELD);
+            out.write(addressJson);
+            out.write(',');
+            out.write(TOKENS_FIELD);
+            metadataService.writeMetadataArray(nftIds, out);
+            out.write('}');
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .cacheControl(CacheControl.maxAge(walletMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate())
+            .body(body);
+    }
+
+    // Streaming handlers must declare ResponseEntity<StreamingResponseBody>, so errors are streamed too
+    private ResponseEntity<StreamingResponseBody> streamedError(HttpStatus status, String message) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(Map.of("error", message));
+        return ResponseEntity.status(status)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> out.write(json));
+    }
+
+    /**
+     * Token image through the local disk cache, or a thumbnail of it with ?size=.
+     * Supports If-None-Match (304) and single byte ranges (206); the body is written
+     * with sendfile where the connector supports it, FileChannel.transferTo otherwise.
+     */
+    @GetMapping("/images/{nftId}")
+    public ResponseEntity<?> getImage(@PathVariable int nftId, @RequestParam(name = "size", required = false) Integer thumbnailSize,
+                                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (thumbnailSize != null && !thumbnailService.isSupportedSize(thumbnailSize)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported thumbnail size"));
+        }
+
+        // A thumbnail that isn't generated yet is queued first in line, and the full image stands in
+        CachedImage image = thumbnailSize != null ? thumbnailService.getThumbnail(nftId, thumbnailSize) : null;
+        boolean standIn = thumbnailSize != null && image == null;
+        if (image == null) {
+            if (!imageCache.isEnabled()) {
+                return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(imageCache.getGatewayUrl(nftId)))
+                    .build();
+            }
+            try {
+                image = imageCache.getImage(nftId);
+            } catch (ImageFetchException e) {
+                System.err.println("Error proxying NFT image " + nftId + ": " + e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of("error", "Image not available"));
+            }
+            if (image == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Image not found"));
+            }
+        }
+
+        // Revalidate stand-ins, so clients pick up the thumbnail once it exists
+        CacheControl cacheControl = standIn
+            ? CacheControl.noCache().cachePublic()
+            : CacheControl.maxAge(imageMaxAgeSeconds, TimeUnit.SECONDS).cachePublic().immutable();
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), image.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(image.getETag())
+                .cacheControl(cacheControl)
+                .build();
+        }
+
+        long size = image.getSize();
+        long start = 0;
+        long end = size - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean partial = false;
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(image.getETag()))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Multi-range requests get the whole file, which RFC 9110 allows
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(size);
+                    end = range.getRangeEnd(size);
+                } catch (IllegalArgumentException e) {
+                    start = size;
+                }
+                if (start >= size || end < start) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+                }
+                partial = true;
+            }
+        }
+
+        long length = end - start + 1;
+        response.setStatus(partial ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+        response.setContentType(MediaTypeFactory.getMediaType(image.getFilename())
+            .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(length);
+        response.setHeader(HttpHeaders.ETAG, image.getETag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        if ("HEAD".equals(request.getMethod())) {
+            return null;
+        }
+
+        // Evicted between lookup and here: nothing has been written yet, so the client can retry
+        if (!image.pin()) {
+            response.reset();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Image not available, please retry"));
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The connector opens the file and copies the region to the socket once this
+            // handler returns; that is out of our sight, so the pin becomes a timed one
+            request.setAttribute(SENDFILE_FILENAME, image.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            image.releaseAfter(sendfilePinMs);
+            return null;
+        }
+
+        try (FileChannel file = FileChannel.open(image.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        } finally {
+            image.release();
+        }
+        return null;
+    }
+
+    // If-None-Match uses the weak comparison
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
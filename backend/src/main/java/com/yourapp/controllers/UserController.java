@@ -1,14 +1,33 @@
 package com.yourapp.controllers;
 
+import com.yourapp.config.RateLimiter;
+import com.yourapp.metrics.StageMetrics;
 import com.yourapp.models.User;
+import com.yourapp.services.HolderLeaderboard;
+import com.yourapp.services.NftService;
+import com.yourapp.services.NftService.BatchHolderResult;
+import com.yourapp.services.UserExportService;
 import com.yourapp.services.UserService;
+import com.yourapp.services.UserService.ProfileSnapshot;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/user")
@@ -16,9 +35,24 @@ import java.util.Map;
 public class UserController {
 
     private final UserService userService;
+    private final NftService nftService;
+    private final StageMetrics stageMetrics;
+    private final HolderLeaderboard holderLeaderboard;
+    private final UserExportService userExportService;
+    private final RateLimiter rateLimiter;
 
-    public UserController(UserService userService) {
+    @Value("${users.profile-cache.max-age-seconds:0}")
+    private long profileMaxAgeSeconds;
+
+    public UserController(UserService userService, NftService nftService, StageMetrics stageMetrics,
+                          HolderLeaderboard holderLeaderboard, UserExportService userExportService,
+                          RateLimiter rateLimiter) {
         this.userService = userService;
+        this.nftService = nftService;
+        this.stageMetrics = stageMetrics;
+        this.holderLeaderboard = holderLeaderboard;
+        this.userExportService = userExportService;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
@@ -26,6 +60,7 @@ public class UserController {
      */
     @PutMapping("/primary-nft")
     public ResponseEntity<?> updatePrimaryNft(@RequestBody UpdatePrimaryNftRequest request) {
+        rateLimiter.acquireAddress(RateLimiter.USER_WRITE, request.getAddress());
         User user = userService.updatePrimaryNft(request.getAddress(), request.getNftId());
         
         if (user == null) {
@@ -42,11 +77,12 @@ public class UserController {
     }
     
     /**
-     * Get user profile by address
+     * Get user profile by address.
+     * Served from the profile cache; a matching If-None-Match is answered with 304 by Spring.
      */
     @GetMapping("/profile/{address}")
     public ResponseEntity<?> getUserProfile(@PathVariable String address) {
-        User user = userService.getUserByAddress(address);
+        ProfileSnapshot user = userService.getProfile(address);
         
         if (user == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -65,7 +101,10 @@ public class UserController {
         profile.put("createdAt", user.getCreatedAt());
         profile.put("lastLogin", user.getLastLogin());
         
-        return ResponseEntity.ok(profile);
+        return ResponseEntity.ok()
+            .eTag(user.getETag())
+            .cacheControl(profileCacheControl())
+            .body(profile);
     }
     
     /**
@@ -73,18 +112,178 @@ public class UserController {
      */
     @PostMapping("/refresh-nfts/{address}")
     public ResponseEntity<?> refreshNftData(@PathVariable String address) {
-        User user = userService.createOrUpdateUser(address);
+        User user = userService.createOrUpdateUser(address, true);
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("hasNft", user.getHasNft());
         response.put("nftCount", user.getNftCount());
         response.put("nftTokens", user.getNftTokens());
-        response.put("message", "NFT data refreshed from blockchain");
+        response.put("nftDataStale", user.isNftDataStale());
+        response.put("message", user.isNftDataStale()
+            ? "NFT data unavailable, showing last known holdings"
+            : "NFT data refreshed from blockchain");
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Get NFT holder info for many wallets in one request
+     */
+    @PostMapping("/nfts/batch")
+    public ResponseEntity<?> getNftHolderInfoBatch(@RequestBody BatchNftRequest request) {
+        List<String> addresses = request.getAddresses();
+        if (addresses == null || addresses.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No addresses given"));
+        }
+        if (addresses.size() > nftService.getBatchMaxSize()) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "Too many addresses, maximum is " + nftService.getBatchMaxSize()));
+        }
+        
+        BatchHolderResult result = stageMetrics.time(StageMetrics.OWNERSHIP, () -> nftService.getNftHolderInfos(addresses));
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", result.getErrors().isEmpty());
+        response.put("results", result.getHolders());
+        response.put("errors", result.getErrors());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Holders ranked by NFT count, one page at a time
+     */
+    @GetMapping("/leaderboard")
+    public ResponseEntity<?> getLeaderboard(@RequestParam(defaultValue = "0") int offset,
+                                            @RequestParam(defaultValue = "25") int limit) {
+        if (offset < 0 || limit < 1 || limit > holderLeaderboard.getMaxPageSize()) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "limit must be between 1 and " + holderLeaderboard.getMaxPageSize()));
+        }
+        List<Map<String, Object>> entries = holderLeaderboard.getTop(offset, limit);
+        if (entries == null) {
+            return leaderboardLoading();
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("entries", entries);
+        response.put("offset", offset);
+        response.put("limit", limit);
+        response.put("holders", holderLeaderboard.getHolderCount());
         
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Leaderboard position of one wallet
+     */
+    @GetMapping("/leaderboard/{address}")
+    public ResponseEntity<?> getLeaderboardRank(@PathVariable String address) {
+        if (!holderLeaderboard.isReady()) {
+            return leaderboardLoading();
+        }
+        Map<String, Object> rank = holderLeaderboard.getRank(address);
+        if (rank == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(Map.of("error", "Wallet is not on the leaderboard"));
+        }
+        return ResponseEntity.ok(rank);
+    }
+    
+    /**
+     * Number of users in each holder tier
+     */
+    @GetMapping("/tiers")
+    public ResponseEntity<?> getTierDistribution() {
+        Map<String, Object> tiers = holderLeaderboard.getTierCounts();
+        if (tiers == null) {
+            return leaderboardLoading();
+        }
+        return ResponseEntity.ok(tiers);
+    }
+    
+    /**
+     * Dump of every user as NDJSON (one JSON object per line) for analytics, read from a
+     * database cursor into a spool file and streamed from there. Requires
+     * "Authorization: Bearer {users.export.token}".
+     * ?since= (ISO date or date-time) limits it to users who logged in at or after that time,
+     * for incremental exports; ?gzip=true sends it gzip-compressed.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportUsers(@RequestParam(required = false) String since,
+                                         @RequestParam(defaultValue = "false") boolean gzip,
+                                         @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+                                         HttpServletResponse response) throws IOException {
+        if (!userExportService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Export is disabled"));
+        }
+        String presented = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        if (!userExportService.isAuthorized(presented)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid export token"));
+        }
+        
+        LocalDateTime sinceTime = null;
+        if (since != null && !since.isBlank()) {
+            try {
+                sinceTime = since.contains("T") ? LocalDateTime.parse(since) : LocalDate.parse(since).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", "since must be an ISO date or date-time"));
+            }
+        }
+        
+        if (!userExportService.tryStart()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(Map.of("error", "An export is already running"));
+        }
+        OutputStream out;
+        try {
+            String filename = "users" + (sinceTime != null ? "-since-" + sinceTime.toLocalDate() : "") + ".ndjson";
+            response.setStatus(HttpStatus.OK.value());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            if (gzip) {
+                response.setContentType("application/gzip");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + ".gz\"");
+                out = new GZIPOutputStream(response.getOutputStream(), 64 * 1024);
+            } else {
+                response.setContentType("application/x-ndjson");
+                response.setCharacterEncoding("UTF-8");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+                out = response.getOutputStream();
+            }
+        } catch (IOException | RuntimeException e) {
+            userExportService.release();
+            throw e;
+        }
+        
+        userExportService.export(sinceTime, out);
+        if (out instanceof GZIPOutputStream gzipOut) {
+            gzipOut.finish();
+        }
+        return null;
+    }
+    
+    private static ResponseEntity<?> leaderboardLoading() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, "5")
+            .body(Map.of("error", "Leaderboard is loading"));
+    }
+    
+    /**
+     * Profiles are per-wallet: private, and by default revalidated with If-None-Match on every poll
+     */
+    private CacheControl profileCacheControl() {
+        return profileMaxAgeSeconds > 0
+            ? CacheControl.maxAge(profileMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate()
+            : CacheControl.noCache().cachePrivate();
+    }
+    
+    @Data
+    public static class BatchNftRequest {
+        private List<String> addresses;
+    }
+    
     @Data
     public static class UpdatePrimaryNftRequest {
         private String address;
@@ -0,0 +1,117 @@
+package com.yourapp.metrics;
+
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.config.RateLimiter;
+import com.yourapp.config.SubsquidDatabase;
+import com.yourapp.services.AuthService;
+import com.yourapp.services.HolderLeaderboard;
+import com.yourapp.services.LastLoginWriteBehind;
+import com.yourapp.services.NftImageCache;
+import com.yourapp.services.NftOwnershipIndex;
+import com.yourapp.services.NftOwnershipSyncService;
+import com.yourapp.services.NftService;
+import com.yourapp.services.NftThumbnailService;
+import com.yourapp.services.NonceService;
+import com.yourapp.services.UserExportService;
+import com.yourapp.services.UserService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * /actuator/backend: one snapshot of every component's stats. The numeric values are
+ * also published as gauges ("subsquid.pool.active", "nonce.store.live", ...) so they
+ * show up under /actuator/metrics next to the app.stage timers. A scrape reads a
+ * component's gauges back to back, so they share one stats map per component rather
+ * than each rebuilding it.
+ */
+@Component
+@Endpoint(id = "backend")
+public class BackendStatsEndpoint implements MeterBinder {
+
+    private final Map<String, Supplier<Map<String, Object>>> sources = new LinkedHashMap<>();
+
+    public BackendStatsEndpoint(SubsquidDatabase subsquidDatabase, NftService nftService,
+                                NftOwnershipIndex ownershipIndex, NftOwnershipSyncService syncService,
+                                NonceService nonceService, AuthService authService,
+                                DatabaseBulkheads bulkheads, LastLoginWriteBehind lastLoginWriteBehind,
+                                UserService userService, HolderLeaderboard holderLeaderboard,
+                                UserExportService userExportService,
+                                NftImageCache imageCache, NftThumbnailService thumbnailService,
+                                RateLimiter rateLimiter) {
+        sources.put("subsquid.pool", subsquidDatabase::getPoolStats);
+        sources.put("users.bulkhead", bulkheads::getUsersStats);
+        sources.put("subsquid.bulkhead", bulkheads::getSubsquidStats);
+        sources.put("subsquid.breaker", nftService::getBreakerStats);
+        sources.put("users.write_behind", lastLoginWriteBehind::getStats);
+        sources.put("users.profile_cache", userService::getProfileCacheStats);
+        sources.put("users.leaderboard", holderLeaderboard::getStats);
+        sources.put("users.export", userExportService::getStats);
+        sources.put("nft.cache", nftService::getCacheStats);
+        sources.put("nft.index", ownershipIndex::getStats);
+        sources.put("nft.sync", syncService::getStats);
+        sources.put("nft.images", imageCache::getStats);
+        sources.put("nft.thumbnails", thumbnailService::getStats);
+        sources.put("nonce.store", nonceService::getStats);
+        sources.put("auth.verify", authService::getStats);
+        sources.put("ratelimit", rateLimiter::getStats);
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        sources.forEach((name, source) -> stats.put(name, source.get()));
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        sources.forEach((name, source) -> {
+            Snapshot snapshot = new Snapshot(source);
+            for (Map.Entry<String, Object> entry : source.get().entrySet()) {
+                if (entry.getValue() instanceof Number || entry.getValue() == null) {
+                    String key = entry.getKey();
+                    Gauge.builder(name + "." + key, snapshot, s -> toDouble(s.get().get(key)))
+                        .strongReference(true)
+                        .register(registry);
+                }
+            }
+        });
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : Double.NaN;
+    }
+
+    /**
+     * A component's stats map, reused for SNAPSHOT_MILLIS so one scrape builds it once
+     */
+    static final class Snapshot implements Supplier<Map<String, Object>> {
+        static final long SNAPSHOT_MILLIS = 1000;
+
+        private final Supplier<Map<String, Object>> source;
+        private Map<String, Object> stats;
+        private long takenAt;
+
+        Snapshot(Supplier<Map<String, Object>> source) {
+            this.source = source;
+        }
+
+        @Override
+        public synchronized Map<String, Object> get() {
+            long now = System.currentTimeMillis();
+            if (stats == null || now - takenAt >= SNAPSHOT_MILLIS) {
+                stats = source.get();
+                takenAt = now;
+            }
+            return stats;
+        }
+    }
+}
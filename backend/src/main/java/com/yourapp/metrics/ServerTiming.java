@@ -0,0 +1,40 @@
+package com.yourapp.metrics;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Stage durations collected for one request, rendered as a Server-Timing header.
+ * Only present on requests where {@link ServerTimingFilter} is active.
+ */
+public class ServerTiming {
+
+    static final String ATTRIBUTE = ServerTiming.class.getName();
+
+    private final long startNanos = System.nanoTime();
+    private final StringBuilder entries = new StringBuilder();
+
+    /**
+     * Collector for the request bound to the current thread, or null
+     */
+    public static ServerTiming current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null
+            : (ServerTiming) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    public synchronized void add(String stage, long nanos) {
+        if (entries.length() > 0) entries.append(", ");
+        entries.append(stage).append(";dur=").append(Math.round(nanos / 10_000.0) / 100.0);
+    }
+
+    /**
+     * Header value with the collected stages plus the total time so far
+     */
+    public synchronized String toHeaderValue() {
+        StringBuilder header = new StringBuilder(entries);
+        if (header.length() > 0) header.append(", ");
+        header.append("total;dur=").append(Math.round((System.nanoTime() - startNanos) / 10_000.0) / 100.0);
+        return header.toString();
+    }
+}
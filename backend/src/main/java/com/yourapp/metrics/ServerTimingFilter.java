@@ -0,0 +1,33 @@
+package com.yourapp.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Starts a {@link ServerTiming} collector for API requests when metrics.server-timing.enabled is set
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    @Value("${metrics.server-timing.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        request.setAttribute(ServerTiming.ATTRIBUTE, new ServerTiming());
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,55 @@
+package com.yourapp.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Per-stage timers for request pipelines (nonce check, ecrecover, ownership lookup, users DB).
+ *
+ * Each stage is recorded as the "app.stage" timer tagged with its name, with a percentile
+ * histogram, and added to the current request's Server-Timing header when that is enabled.
+ */
+@Component
+public class StageMetrics {
+
+    public static final String NONCE = "nonce";
+    public static final String ECRECOVER = "ecrecover";
+    public static final String OWNERSHIP = "ownership";
+    public static final String USER_DB = "user_db";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public StageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public <T> T time(String stage, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void record(String stage, long nanos) {
+        timers.computeIfAbsent(stage, name -> Timer.builder("app.stage")
+                .description("Time spent in one stage of a request")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(registry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+
+        ServerTiming timing = ServerTiming.current();
+        if (timing != null) {
+            timing.add(stage, nanos);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.yourapp.models;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted position of a background sync worker (e.g. last processed block)
+ */
+@Entity
+@Table(name = "sync_cursors")
+public class SyncCursor {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private Long position;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Getters & setters
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Long getPosition() { return position; }
+    public void setPosition(Long position) { this.position = position; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,190 @@
+package com.yourapp.models;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Immutable sorted set of NFT token IDs.
+ *
+ * Stored as a sorted int[] with O(log n) contains. The binary form is a version
+ * byte, the element count, then the first ID and each following gap as unsigned
+ * varints, so typical holdings take one or two bytes per token.
+ */
+public final class TokenSet {
+
+    public static final TokenSet EMPTY = new TokenSet(new int[0]);
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final int[] ids;
+    private String csv; // lazily built, racy but idempotent
+
+    private TokenSet(int[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Wrap token IDs. A strictly ascending array is used as-is (do not modify it afterwards),
+     * anything else is copied, sorted and de-duplicated.
+     */
+    public static TokenSet of(int[] ids) {
+        if (ids == null || ids.length == 0) {
+            return EMPTY;
+        }
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] <= ids[i - 1]) {
+                return new TokenSet(sortedDistinct(ids.clone()));
+            }
+        }
+        return ids[0] < 0 ? new TokenSet(sortedDistinct(ids.clone())) : new TokenSet(ids);
+    }
+
+    /**
+     * Parse the legacy comma-separated format, skipping blanks and non-numeric entries
+     */
+    public static TokenSet parseCsv(String csv) {
+        if (csv == null || csv.isBlank()) {
+            return EMPTY;
+        }
+        int[] ids = new int[8];
+        int size = 0;
+        int value = 0;
+        boolean inNumber = false;
+        boolean valid = true;
+        for (int i = 0, n = csv.length(); i <= n; i++) {
+            char c = i < n ? csv.charAt(i) : ',';
+            if (c >= '0' && c <= '9' && value <= (Integer.MAX_VALUE - 9) / 10) {
+                value = value * 10 + (c - '0');
+                inNumber = true;
+            } else if (c == ',') {
+                if (inNumber && valid) {
+                    if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+                    ids[size++] = value;
+                }
+                value = 0;
+                inNumber = false;
+                valid = true;
+            } else if (c != ' ') {
+                valid = false;
+            }
+        }
+        return size == 0 ? EMPTY : new TokenSet(sortedDistinct(Arrays.copyOf(ids, size)));
+    }
+
+    /**
+     * Decode the binary form produced by {@link #encode()}
+     */
+    public static TokenSet decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return EMPTY;
+        }
+        if (bytes[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown token set format: " + bytes[0]);
+        }
+        int[] pos = {1};
+        int count = readVarint(bytes, pos);
+        int[] ids = new int[count];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readVarint(bytes, pos);
+            ids[i] = previous;
+        }
+        return count == 0 ? EMPTY : new TokenSet(ids);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + ids.length * 2);
+        out.write(FORMAT_VERSION);
+        writeVarint(out, ids.length);
+        int previous = 0;
+        for (int id : ids) {
+            writeVarint(out, id - previous);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    /**
+     * Sorted token IDs. The array is shared, do not modify it.
+     */
+    public int[] toArray() {
+        return ids;
+    }
+
+    /**
+     * Comma-separated form, as returned by the API ("1,5,42")
+     */
+    public String toCsv() {
+        String result = csv;
+        if (result == null) {
+            StringBuilder sb = new StringBuilder(ids.length * 5);
+            for (int i = 0; i < ids.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(ids[i]);
+            }
+            csv = result = sb.toString();
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof TokenSet other && Arrays.equals(ids, other.ids));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ids);
+    }
+
+    @Override
+    public String toString() {
+        return toCsv();
+    }
+
+    private static int[] sortedDistinct(int[] ids) {
+        Arrays.sort(ids);
+        int size = 0;
+        for (int id : ids) {
+            if (id >= 0 && (size == 0 || ids[size - 1] != id)) {
+                ids[size++] = id;
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] pos) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated token set");
+            }
+            byte b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in token set");
+    }
+}
@@ -0,0 +1,21 @@
+package com.yourapp.models;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps {@link TokenSet} to its compact binary form in a bytea column
+ */
+@Converter
+public class TokenSetConverter implements AttributeConverter<TokenSet, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(TokenSet tokenSet) {
+        return tokenSet == null ? null : tokenSet.encode();
+    }
+
+    @Override
+    public TokenSet convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : TokenSet.decode(bytes);
+    }
+}
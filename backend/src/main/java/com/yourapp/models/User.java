@@ -5,6 +5,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+// Row plus "written" flag returned by UserRepositoryCustom#upsertFromLogin
+@SqlResultSetMapping(
+    name = "User.upsertResult",
+    entities = @EntityResult(entityClass = User.class),
+    columns = @ColumnResult(name = "written", type = Boolean.class))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -19,14 +24,36 @@ public class User {
     @Column(name = "last_login")
     private LocalDateTime lastLogin;
 
+    // Bumped on every entity write; last_login bumps from the write-behind buffer leave it alone
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
     @Column(name = "has_nft")
     private boolean hasNft;
 
     @Column(name = "nft_count")
     private Integer nftCount = 0;
 
+    // When the holdings below were last read from Subsquid or the change feed. Logins that
+    // could not read ownership leave it alone, so it is not the same as last_login.
+    @Column(name = "nft_synced_at")
+    private LocalDateTime nftSyncedAt;
+
+    // Legacy comma-separated token list, only read to migrate rows to nft_token_set
     @Column(name = "nft_tokens", columnDefinition = "TEXT")
-    private String nftTokens;
+    private String legacyNftTokens;
+
+    @Convert(converter = TokenSetConverter.class)
+    @Column(name = "nft_token_set", columnDefinition = "bytea")
+    private TokenSet nftTokenSet = TokenSet.EMPTY;
+
+    // Set when @PostLoad converted the legacy column; the row must be saved once to persist it
+    @Transient
+    private boolean legacyMigrationPending;
+
+    // Set on users returned from a login that could not read current ownership from Subsquid
+    @Transient
+    private boolean nftDataStale;
     
     // New fields for profile customization
     @Column(name = "primary_nft_id")
@@ -52,14 +79,31 @@ public class User {
     public LocalDateTime getLastLogin() { return lastLogin; }
     public void setLastLogin(LocalDateTime lastLogin) { this.lastLogin = lastLogin; }
     
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    
     public boolean getHasNft() { return hasNft; }
     public void setHasNft(boolean hasNft) { this.hasNft = hasNft; }
     
     public Integer getNftCount() { return nftCount; }
     public void setNftCount(Integer nftCount) { this.nftCount = nftCount; }
     
-    public String getNftTokens() { return nftTokens; }
-    public void setNftTokens(String nftTokens) { this.nftTokens = nftTokens; }
+    public LocalDateTime getNftSyncedAt() { return nftSyncedAt; }
+    public void setNftSyncedAt(LocalDateTime nftSyncedAt) { this.nftSyncedAt = nftSyncedAt; }
+    
+    // Comma-separated token IDs, the shape the API has always returned
+    public String getNftTokens() { return nftTokenSet.toCsv(); }
+    
+    public TokenSet getNftTokenSet() { return nftTokenSet; }
+    public void setNftTokenSet(TokenSet nftTokenSet) {
+        this.nftTokenSet = nftTokenSet != null ? nftTokenSet : TokenSet.EMPTY;
+        this.legacyNftTokens = null;
+        this.legacyMigrationPending = false;
+    }
+    
+    public boolean isLegacyMigrationPending() { return legacyMigrationPending; }
+    
+    public boolean isNftDataStale() { return nftDataStale; }
+    public void setNftDataStale(boolean nftDataStale) { this.nftDataStale = nftDataStale; }
     
     public Integer getPrimaryNftId() { return primaryNftId; }
     public void setPrimaryNftId(Integer primaryNftId) { this.primaryNftId = primaryNftId; }
@@ -73,20 +117,42 @@ public class User {
     public String getHolderTier() { return holderTier; }
     public void setHolderTier(String holderTier) { this.holderTier = holderTier; }
     
+    // Rows written before nft_token_set existed only have the CSV column: convert on load,
+    // the CSV is cleared on the next save
+    @PostLoad
+    void migrateLegacyNftTokens() {
+        if (nftTokenSet == null) {
+            nftTokenSet = TokenSet.parseCsv(legacyNftTokens);
+            legacyNftTokens = null;
+            legacyMigrationPending = true;
+        }
+    }
+    
+    @PrePersist
+    @PreUpdate
+    void touchUpdatedAt() {
+        updatedAt = LocalDateTime.now();
+    }
+    
     // Helper method to determine tier based on NFT count
     public void calculateHolderTier() {
+        this.holderTier = holderTierFor(nftCount);
+    }
+    
+    // Tier for an NFT count, null for non-holders
+    public static String holderTierFor(Integer nftCount) {
         if (nftCount == null || nftCount == 0) {
-            this.holderTier = null;
+            return null;
         } else if (nftCount >= 50) {
-            this.holderTier = "WHALE";
+            return "WHALE";
         } else if (nftCount >= 20) {
-            this.holderTier = "DIAMOND";
+            return "DIAMOND";
         } else if (nftCount >= 10) {
-            this.holderTier = "GOLD";
+            return "GOLD";
         } else if (nftCount >= 5) {
-            this.holderTier = "SILVER";
+            return "SILVER";
         } else {
-            this.holderTier = "BRONZE";
+            return "BRONZE";
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.yourapp.repositories;
+
+import com.yourapp.models.SyncCursor;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SyncCursorRepository extends JpaRepository<SyncCursor, String> {
+}
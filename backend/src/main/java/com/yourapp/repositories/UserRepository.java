@@ -2,10 +2,18 @@ package com.yourapp.repositories;
 
 import com.yourapp.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     Optional<User> findByAddress(String address);
+
+    // Addresses must be passed lower-cased. Served by users_address_lower_idx (db/users/users_indexes.sql)
+    @Query("SELECT u FROM User u WHERE LOWER(u.address) IN :addresses")
+    List<User> findByAddressInIgnoreCase(@Param("addresses") Collection<String> addresses);
 } 
\ No newline at end of file
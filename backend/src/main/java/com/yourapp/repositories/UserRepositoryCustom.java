@@ -0,0 +1,38 @@
+package com.yourapp.repositories;
+
+import com.yourapp.models.User;
+
+import java.time.LocalDateTime;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Insert or update a user from a login in one statement (PostgreSQL only).
+     *
+     * The candidate carries the values computed from the wallet's holdings. A new address
+     * is inserted; an existing row is only updated when one of the holdings-derived
+     * columns differs, or its nft_synced_at is unset or older than resyncBefore (null:
+     * never), otherwise it is returned untouched.
+     */
+    UpsertResult upsertFromLogin(User candidate, LocalDateTime resyncBefore);
+
+    /**
+     * Whether the users database supports upsertFromLogin
+     */
+    boolean isUpsertSupported();
+
+    final class UpsertResult {
+        private final User user;
+        private final boolean written;
+
+        public UpsertResult(User user, boolean written) {
+            this.user = user;
+            this.written = written;
+        }
+
+        public User getUser() { return user; }
+
+        // False when the row already matched and nothing was written (last_login included)
+        public boolean isWritten() { return written; }
+    }
+}
@@ -0,0 +1,112 @@
+package com.yourapp.repositories;
+
+import com.yourapp.models.TokenSetConverter;
+import com.yourapp.models.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    // The CTE inserts, or updates only when a holdings-derived column changed. When the
+    // conflict update is skipped RETURNING yields nothing, so the second branch returns the
+    // existing row - both branches read the same snapshot, so it is still one round trip.
+    // An unchanged row is still written when its nft_synced_at predates resyncBefore, so the
+    // change feed's trusted login path can rely on it.
+    private static final String UPSERT_SQL = """
+        WITH upserted AS (
+            INSERT INTO users AS u (address, created_at, last_login, updated_at, has_nft, nft_count, nft_synced_at,
+                                    nft_tokens, nft_token_set, primary_nft_id, profile_background, profile_badge,
+                                    holder_tier)
+            VALUES (:address, :now, :now, :now, :hasNft, :nftCount, :now,
+                    NULL, :nftTokenSet, :primaryNftId, :profileBackground, :profileBadge, :holderTier)
+            ON CONFLICT (address) DO UPDATE SET
+                last_login = EXCLUDED.last_login,
+                updated_at = EXCLUDED.updated_at,
+                has_nft = EXCLUDED.has_nft,
+                nft_count = EXCLUDED.nft_count,
+                nft_synced_at = EXCLUDED.nft_synced_at,
+                nft_tokens = NULL,
+                nft_token_set = EXCLUDED.nft_token_set,
+                primary_nft_id = EXCLUDED.primary_nft_id,
+                profile_background = EXCLUDED.profile_background,
+                profile_badge = EXCLUDED.profile_badge,
+                holder_tier = EXCLUDED.holder_tier
+            WHERE u.nft_token_set IS DISTINCT FROM EXCLUDED.nft_token_set
+               OR u.nft_tokens IS NOT NULL
+               OR u.has_nft IS DISTINCT FROM EXCLUDED.has_nft
+               OR u.nft_count IS DISTINCT FROM EXCLUDED.nft_count
+               OR u.holder_tier IS DISTINCT FROM EXCLUDED.holder_tier
+               OR u.profile_badge IS DISTINCT FROM EXCLUDED.profile_badge
+               OR u.profile_background IS DISTINCT FROM EXCLUDED.profile_background
+               OR u.nft_synced_at IS NULL
+               OR u.nft_synced_at < :resyncBefore
+            RETURNING u.*, true AS written
+        )
+        SELECT * FROM upserted
+        UNION ALL
+        SELECT u.*, false AS written FROM users u
+        WHERE u.address = :address AND NOT EXISTS (SELECT 1 FROM upserted)
+        """;
+
+    private static final TokenSetConverter TOKEN_SET_CONVERTER = new TokenSetConverter();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private volatile Boolean upsertSupported;
+
+    @Override
+    @Transactional
+    public UpsertResult upsertFromLogin(User candidate, LocalDateTime resyncBefore) {
+        List<?> rows = execute(candidate, resyncBefore);
+        if (rows.isEmpty()) {
+            // A concurrent first login inserted the row after our snapshot was taken;
+            // running again sees it through the conflict path
+            rows = execute(candidate, resyncBefore);
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalStateException("Upsert returned no row for " + candidate.getAddress());
+        }
+        Object[] row = (Object[]) rows.get(0);
+        return new UpsertResult((User) row[0], Boolean.TRUE.equals(row[1]));
+    }
+
+    private List<?> execute(User candidate, LocalDateTime resyncBefore) {
+        LocalDateTime now = candidate.getLastLogin() != null ? candidate.getLastLogin() : LocalDateTime.now();
+        NativeQuery<?> query = entityManager.createNativeQuery(UPSERT_SQL, "User.upsertResult")
+            .unwrap(NativeQuery.class);
+        // Typed binds, so nulls reach PostgreSQL with the column's type
+        query.setParameter("address", candidate.getAddress(), String.class);
+        query.setParameter("now", now, LocalDateTime.class);
+        query.setParameter("hasNft", candidate.getHasNft(), Boolean.class);
+        query.setParameter("nftCount", candidate.getNftCount(), Integer.class);
+        query.setParameter("nftTokenSet", TOKEN_SET_CONVERTER.convertToDatabaseColumn(candidate.getNftTokenSet()), byte[].class);
+        query.setParameter("primaryNftId", candidate.getPrimaryNftId(), Integer.class);
+        query.setParameter("profileBackground", candidate.getProfileBackground(), String.class);
+        query.setParameter("profileBadge", candidate.getProfileBadge(), String.class);
+        query.setParameter("holderTier", candidate.getHolderTier(), String.class);
+        query.setParameter("resyncBefore", resyncBefore, LocalDateTime.class);
+        return query.getResultList();
+    }
+
+    @Override
+    public boolean isUpsertSupported() {
+        Boolean supported = upsertSupported;
+        if (supported == null) {
+            String product = entityManager.unwrap(Session.class)
+                .doReturningWork(connection -> connection.getMetaData().getDatabaseProductName());
+            supported = "PostgreSQL".equals(product);
+            upsertSupported = supported;
+            if (!supported) {
+                System.out.println("Users database is " + product + ", user upsert disabled");
+            }
+        }
+        return supported;
+    }
+}
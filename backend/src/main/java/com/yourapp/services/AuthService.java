@@ -1,23 +1,124 @@
 package com.yourapp.services;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.web3j.crypto.Keys;
 import org.web3j.crypto.Sign;
 import org.web3j.utils.Numeric;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class AuthService {
 
+    // secp256k1 group order; valid r and s are in [1, n-1]
+    private static final BigInteger CURVE_ORDER =
+        new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141", 16);
+
+    // Public key recovery is CPU-bound: size the pool to the cores, not to request threads
+    @Value("${auth.verify.threads:0}")
+    private int threads;
+
+    @Value("${auth.verify.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${auth.verify.timeout-ms:2000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor verifyExecutor;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LongAdder valid = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        verifyExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            r -> {
+                Thread t = new Thread(r, "sig-verify-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        verifyExecutor.shutdownNow();
+    }
+
+    /**
+     * Verify that the signature over message was made by expectedAddress.
+     * Recovery runs on the bounded verification pool; the calling thread waits for it.
+     *
+     * @throws VerificationRejectedException when the pool is saturated or the deadline passes
+     */
     public boolean verifySignature(String message, String signature, String expectedAddress) {
+        if (message == null || !isWellFormedAddress(expectedAddress) || !isWellFormedSignature(signature)) {
+            malformed.increment();
+            return false;
+        }
+
+        long submittedAt = System.nanoTime();
+        Future<Boolean> result;
+        try {
+            result = verifyExecutor.submit(() -> {
+                queueNanos.add(System.nanoTime() - submittedAt);
+                return recoverAndCompare(message, signature, expectedAddress);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new VerificationRejectedException("Signature verification is saturated");
+        }
+        accepted.increment();
+
+        try {
+            boolean isValid = result.get(timeoutMs, TimeUnit.MILLISECONDS);
+            (isValid ? valid : invalid).increment();
+            return isValid;
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            rejected.increment();
+            throw new VerificationRejectedException("Signature verification timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VerificationRejectedException("Signature verification interrupted");
+        } catch (ExecutionException e) {
+            invalid.increment();
+            return false;
+        } finally {
+            long elapsed = System.nanoTime() - submittedAt;
+            totalNanos.add(elapsed);
+            maxNanos.accumulate(elapsed);
+        }
+    }
+
+    private boolean recoverAndCompare(String message, String signature, String expectedAddress) {
         try {
-            System.out.println("Received message: '" + message + "'");
-            System.out.println("Received signature: " + signature);
-            System.out.println("Expected address: " + expectedAddress);
-            
             // Add Ethereum signed message prefix
             String prefix = "\u0019Ethereum Signed Message:\n" + message.length();
             byte[] msgHash = (prefix + message).getBytes(StandardCharsets.UTF_8);
@@ -30,16 +131,13 @@ public class AuthService {
             String recoveredAddress = "0x" + Keys.getAddress(publicKey);
 
             // Compare recovered address with expected
-            System.out.println("Recovered: " + recoveredAddress);
-            System.out.println("Expected: " + expectedAddress);
             return recoveredAddress.equalsIgnoreCase(expectedAddress);
         } catch (Exception e) {
-            e.printStackTrace();
             return false;
         }
     }
 
-    private Sign.SignatureData parseSignature(String signature) {
+    Sign.SignatureData parseSignature(String signature) {
         byte[] sigBytes = Numeric.hexStringToByteArray(signature);
         byte v = sigBytes[64];
         if (v < 27) v += 27; // Fix v if needed
@@ -47,4 +145,61 @@ public class AuthService {
         byte[] s = Arrays.copyOfRange(sigBytes, 32, 64);
         return new Sign.SignatureData(v, r, s);
     }
+
+    /**
+     * Cheap structural checks so garbage never reaches public key recovery:
+     * 65 bytes of hex, v in {0, 1, 27, 28}, and r, s within the curve order.
+     */
+    public static boolean isWellFormedSignature(String signature) {
+        if (signature == null) return false;
+        int offset = signature.startsWith("0x") || signature.startsWith("0X") ? 2 : 0;
+        if (signature.length() - offset != 130) return false;
+        for (int i = offset; i < signature.length(); i++) {
+            if (Character.digit(signature.charAt(i), 16) < 0) return false;
+        }
+        int v = Integer.parseInt(signature.substring(offset + 128), 16);
+        if (v != 0 && v != 1 && v != 27 && v != 28) return false;
+        BigInteger r = new BigInteger(signature.substring(offset, offset + 64), 16);
+        BigInteger s = new BigInteger(signature.substring(offset + 64, offset + 128), 16);
+        return r.signum() > 0 && r.compareTo(CURVE_ORDER) < 0
+            && s.signum() > 0 && s.compareTo(CURVE_ORDER) < 0;
+    }
+
+    public static boolean isWellFormedAddress(String address) {
+        if (address == null || address.length() != 42 || !address.startsWith("0x")) return false;
+        for (int i = 2; i < 42; i++) {
+            if (Character.digit(address.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Throughput, rejection and latency counters for the verification pool
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long done = valid.sum() + invalid.sum();
+        stats.put("poolSize", verifyExecutor.getMaximumPoolSize());
+        stats.put("active", verifyExecutor.getActiveCount());
+        stats.put("queued", verifyExecutor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("malformed", malformed.sum());
+        stats.put("valid", valid.sum());
+        stats.put("invalid", invalid.sum());
+        stats.put("avgMillis", done == 0 ? 0.0 : totalNanos.sum() / done / 1_000_000.0);
+        stats.put("avgQueueMillis", done == 0 ? 0.0 : queueNanos.sum() / done / 1_000_000.0);
+        stats.put("maxMillis", maxNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * Thrown when verification could not be attempted in time; callers should answer 503
+     */
+    public static class VerificationRejectedException extends RuntimeException {
+        public VerificationRejectedException(String message) {
+            super(message);
+        }
+    }
 }
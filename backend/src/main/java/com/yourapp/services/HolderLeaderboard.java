@@ -0,0 +1,432 @@
+package com.yourapp.services;
+
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory holder leaderboard, so rankings never need ORDER BY nft_count on the users table.
+ *
+ * Holders are kept in an order-statistics treap (NFT count descending, ties by address),
+ * which answers rank-of-address and top-K pages in O(log n) (+ K). Tier counts are kept
+ * alongside. Built by streaming the users table at startup and rebuilt periodically to
+ * pick up writes made outside UserService; UserService pushes count changes via {@link #update}.
+ */
+@Service
+public class HolderLeaderboard {
+
+    // Same order as User#holderTierFor, non-holders last
+    private static final String[] TIERS = {"WHALE", "DIAMOND", "GOLD", "SILVER", "BRONZE", "NONE"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseBulkheads bulkheads;
+
+    @Value("${leaderboard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${leaderboard.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${leaderboard.max-page-size:100}")
+    private int maxPageSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Null until the first build completes. Guarded by lock
+    private Ranking ranking;
+
+    // Updates that arrive while a rebuild is streaming, replayed onto the new ranking. Guarded by lock
+    private Map<String, Integer> updatesDuringBuild;
+
+    private final AtomicLong updates = new AtomicLong();
+    private volatile long builtAt;
+    private volatile long buildMillis;
+    private volatile String lastError;
+
+    public HolderLeaderboard(JdbcTemplate jdbcTemplate, DatabaseBulkheads bulkheads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bulkheads = bulkheads;
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ranking != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Record a user's current NFT count. No-op when the count is unchanged.
+     */
+    public void update(String address, Integer nftCount) {
+        if (!enabled || address == null) {
+            return;
+        }
+        int count = nftCount != null ? nftCount : 0;
+        lock.writeLock().lock();
+        try {
+            if (updatesDuringBuild != null) {
+                updatesDuringBuild.put(address, count);
+            }
+            if (ranking != null && ranking.put(address, count)) {
+                updates.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild from a full users scan, then swap it in
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${leaderboard.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            updatesDuringBuild = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Ranking built = null;
+        try {
+            built = bulkheads.users().call(this::load);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            System.err.println("Error building holder leaderboard: " + e.getMessage());
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (built != null) {
+                updatesDuringBuild.forEach(built::put);
+                ranking = built;
+            }
+            updatesDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (built != null) {
+            builtAt = System.currentTimeMillis();
+            buildMillis = builtAt - start;
+            lastError = null;
+            System.out.println("Holder leaderboard built: " + built.size() + " holders of "
+                + built.nodes.size() + " users in " + buildMillis + "ms");
+        }
+    }
+
+    private Ranking load() {
+        Ranking built = new Ranking();
+        StreamingQuery.streamQuery(jdbcTemplate.getDataSource(), "SELECT address, nft_count FROM users", fetchSize,
+            (ResultSet rs) -> {
+                String address = rs.getString(1);
+                if (address != null) {
+                    built.put(address, rs.getInt(2));
+                }
+            });
+        return built;
+    }
+
+    /**
+     * One page of holders, best first, or null while the leaderboard is not built.
+     * Equal counts share a rank ("1, 2, 2, 4").
+     */
+    public List<Map<String, Object>> getTop(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            if (ranking == null) {
+                return null;
+            }
+            int from = Math.min(Math.max(0, offset), ranking.size());
+            int pageSize = Math.max(0, Math.min(limit, maxPageSize));
+            List<Node> page = new ArrayList<>(Math.min(pageSize, ranking.size()));
+            ranking.collect(ranking.root, from, from + pageSize, page);
+
+            List<Map<String, Object>> entries = new ArrayList<>(page.size());
+            int rank = 0;
+            int previousCount = -1;
+            for (int i = 0; i < page.size(); i++) {
+                Node node = page.get(i);
+                if (node.count != previousCount) {
+                    rank = i == 0 ? ranking.countAbove(node.count) + 1 : from + i + 1;
+                    previousCount = node.count;
+                }
+                entries.add(entry(node, rank));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rank of a wallet, or null if it holds nothing, is unknown, or the leaderboard is not built
+     */
+    public Map<String, Object> getRank(String address) {
+        lock.readLock().lock();
+        try {
+            Node node = ranking != null ? ranking.nodes.get(NftService.normalizeAddress(address)) : null;
+            if (node == null || node.count <= 0) {
+                return null;
+            }
+            Map<String, Object> entry = entry(node, ranking.countAbove(node.count) + 1);
+            entry.put("holders", ranking.size());
+            return entry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Users per holder tier, or null while the leaderboard is not built
+     */
+    public Map<String, Object> getTierCounts() {
+        lock.readLock().lock();
+        try {
+            if (ranking == null) {
+                return null;
+            }
+            Map<String, Integer> tiers = new LinkedHashMap<>();
+            for (int i = 0; i < TIERS.length; i++) {
+                tiers.put(TIERS[i], ranking.tierCounts[i]);
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("tiers", tiers);
+            result.put("holders", ranking.size());
+            result.put("users", ranking.nodes.size());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getHolderCount() {
+        lock.readLock().lock();
+        try {
+            return ranking != null ? ranking.size() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<String, Object> entry(Node node, int rank) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("rank", rank);
+        entry.put("address", node.address);
+        entry.put("nftCount", node.count);
+        entry.put("holderTier", User.holderTierFor(node.count));
+        return entry;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("enabled", enabled);
+            stats.put("ready", ranking != null);
+            stats.put("holders", ranking != null ? ranking.size() : 0);
+            stats.put("users", ranking != null ? ranking.nodes.size() : 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("updates", updates.get());
+        stats.put("builtAt", builtAt);
+        stats.put("buildMillis", buildMillis);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    private static int tierIndex(int count) {
+        String tier = User.holderTierFor(count);
+        for (int i = 0; i < TIERS.length - 1; i++) {
+            if (TIERS[i].equals(tier)) {
+                return i;
+            }
+        }
+        return TIERS.length - 1;
+    }
+
+    /**
+     * Treap node. Only holders (count > 0) are linked into the tree; everyone is in the map.
+     */
+    private static final class Node {
+        final String address;
+        final String key;
+        final int count;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(String address, String key, int count) {
+            this.address = address;
+            this.key = key;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Users by normalized address plus the treap of holders. Not thread-safe; guarded by the outer lock.
+     */
+    private static final class Ranking {
+        final Map<String, Node> nodes = new HashMap<>();
+        final int[] tierCounts = new int[TIERS.length];
+        Node root;
+
+        int size() {
+            return size(root);
+        }
+
+        /**
+         * @return true if the stored count changed
+         */
+        boolean put(String address, int count) {
+            String key = NftService.normalizeAddress(address);
+            Node existing = nodes.get(key);
+            if (existing != null) {
+                if (existing.count == count) {
+                    return false;
+                }
+                if (existing.count > 0) {
+                    root = remove(root, existing);
+                }
+                tierCounts[tierIndex(existing.count)]--;
+            }
+            Node node = new Node(address, key, count);
+            nodes.put(key, node);
+            tierCounts[tierIndex(count)]++;
+            if (count > 0) {
+                Node[] parts = split(root, node);
+                root = merge(merge(parts[0], node), parts[1]);
+            }
+            return true;
+        }
+
+        /**
+         * Holders with a strictly higher count
+         */
+        int countAbove(int count) {
+            int above = 0;
+            Node t = root;
+            while (t != null) {
+                if (t.count > count) {
+                    above += size(t.left) + 1;
+                    t = t.right;
+                } else {
+                    t = t.left;
+                }
+            }
+            return above;
+        }
+
+        /**
+         * Append the nodes at in-order positions [from, to) of subtree t
+         */
+        void collect(Node t, int from, int to, List<Node> out) {
+            if (t == null || from >= to) {
+                return;
+            }
+            int leftSize = size(t.left);
+            if (from < leftSize) {
+                collect(t.left, from, Math.min(to, leftSize), out);
+            }
+            if (from <= leftSize && leftSize < to) {
+                out.add(t);
+            }
+            if (to > leftSize + 1) {
+                collect(t.right, Math.max(0, from - leftSize - 1), to - leftSize - 1, out);
+            }
+        }
+
+        // Higher count first, then address, so every node has a distinct position
+        private static int compare(Node a, Node b) {
+            if (a.count != b.count) {
+                return a.count > b.count ? -1 : 1;
+            }
+            return a.key.compareTo(b.key);
+        }
+
+        private static int size(Node t) {
+            return t == null ? 0 : t.size;
+        }
+
+        private static void resize(Node t) {
+            t.size = 1 + size(t.left) + size(t.right);
+        }
+
+        /**
+         * Split t into nodes ordered before pivot and the rest
+         */
+        private static Node[] split(Node t, Node pivot) {
+            if (t == null) {
+                return new Node[] {null, null};
+            }
+            if (compare(t, pivot) < 0) {
+                Node[] parts = split(t.right, pivot);
+                t.right = parts[0];
+                resize(t);
+                parts[0] = t;
+                return parts;
+            }
+            Node[] parts = split(t.left, pivot);
+            t.left = parts[1];
+            resize(t);
+            parts[1] = t;
+            return parts;
+        }
+
+        // Every node in a is ordered before every node in b
+        private static Node merge(Node a, Node b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                resize(a);
+                return a;
+            }
+            b.left = merge(a, b.left);
+            resize(b);
+            return b;
+        }
+
+        private static Node remove(Node t, Node target) {
+            if (t == null) {
+                return null;
+            }
+            if (t == target) {
+                return merge(t.left, t.right);
+            }
+            if (compare(target, t) < 0) {
+                t.left = remove(t.left, target);
+            } else {
+                t.right = remove(t.right, target);
+            }
+            resize(t);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.yourapp.services;
+
+import com.yourapp.config.DatabaseBulkheads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind buffer for login bookkeeping.
+ *
+ * A login that changes nothing but last_login records the timestamp here instead of
+ * saving the row. Repeated logins by the same address coalesce into one pending entry,
+ * and pending entries are written in periodic JDBC batches (and on shutdown).
+ * Timestamps only ever move forward, so a late flush cannot undo a newer write.
+ */
+@Service
+public class LastLoginWriteBehind {
+
+    private static final String UPDATE_SQL =
+        "UPDATE users SET last_login = ? WHERE address = ? AND (last_login IS NULL OR last_login < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseBulkheads bulkheads;
+
+    @Value("${users.write-behind.enabled:true}")
+    private boolean enabled;
+
+    // Beyond this many pending addresses, logins fall back to a synchronous save
+    @Value("${users.write-behind.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${users.write-behind.batch-size:500}")
+    private int batchSize;
+
+    // Pending last_login per stored (exact-case) address
+    private final Map<String, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private volatile String lastError;
+
+    public LastLoginWriteBehind(JdbcTemplate jdbcTemplate, DatabaseBulkheads bulkheads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bulkheads = bulkheads;
+    }
+
+    /**
+     * Queue a last_login bump for an existing row.
+     *
+     * @return false if the buffer is disabled or full; the caller must save synchronously
+     */
+    public boolean record(String address, LocalDateTime lastLogin) {
+        if (!enabled || (pending.size() >= maxPending && !pending.containsKey(address))) {
+            return false;
+        }
+        pending.merge(address, lastLogin, (a, b) -> a.isAfter(b) ? a : b);
+        recorded.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Pending (not yet flushed) last_login for an address, or null
+     */
+    public LocalDateTime getPending(String address) {
+        return pending.get(address);
+    }
+
+    @Scheduled(fixedDelayString = "${users.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+
+        List<Object[]> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<Map.Entry<String, LocalDateTime>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, LocalDateTime> entry = it.next();
+            String address = entry.getKey();
+            LocalDateTime lastLogin = entry.getValue();
+            // Only take the entry if no newer login arrived in the meantime
+            if (pending.remove(address, lastLogin)) {
+                Timestamp ts = Timestamp.valueOf(lastLogin);
+                batch.add(new Object[] {ts, address, ts});
+            }
+            if (batch.size() == batchSize || (!it.hasNext() && !batch.isEmpty())) {
+                writeBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        lastFlushMillis = System.currentTimeMillis() - start;
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            bulkheads.users().run(() -> jdbcTemplate.batchUpdate(UPDATE_SQL, batch));
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+            lastError = null;
+        } catch (Exception e) {
+            // Put the entries back (keeping any newer login) and retry on the next tick
+            for (Object[] row : batch) {
+                pending.merge((String) row[1], ((Timestamp) row[0]).toLocalDateTime(),
+                    (a, b) -> a.isAfter(b) ? a : b);
+            }
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+            System.err.println("Error flushing " + batch.size() + " last_login updates: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            System.err.println("Dropped " + pending.size() + " pending last_login updates on shutdown");
+        }
+    }
+
+    /**
+     * Queue depth and flush counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pending", pending.size());
+        stats.put("maxPending", maxPending);
+        stats.put("recorded", recorded.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("failures", failures.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
@@ -0,0 +1,427 @@
+package com.yourapp.services;
+
+import com.yourapp.config.Bulkhead;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Disk cache for collection images fetched from the IPFS gateway.
+ *
+ * Each image is fetched once and stored as "{filename}.{sha-256}" under the cache
+ * directory, so the strong ETag survives restarts without rehashing. The directory is
+ * scanned at startup; beyond max-cache-mb the least recently served files are deleted.
+ * Concurrent requests for an image that is still downloading share one fetch, and
+ * fetches run behind a bulkhead so a cold cache cannot open unbounded gateway connections.
+ * Gateway 404s are remembered for not-found-ttl-ms, so unknown IDs cost no fetch.
+ *
+ * A response pins the file it serves (CachedImage#pin); an evicted file that is still
+ * pinned is only deleted once the last response has released it.
+ */
+@Service
+public class NftImageCache {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final NftMetadataService metadataService;
+
+    @Value("${nft.images.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nft.images.gateway:" + NftMetadataService.IPFS_GATEWAY + "}")
+    private String gateway;
+
+    @Value("${nft.images.cache-dir:${java.io.tmpdir}/computerchan-nft-images}")
+    private String cacheDir;
+
+    @Value("${nft.images.max-cache-mb:512}")
+    private long maxCacheMb;
+
+    // Larger upstream responses are rejected rather than cached
+    @Value("${nft.images.max-image-mb:10}")
+    private long maxImageMb;
+
+    @Value("${nft.images.fetch-timeout-ms:15000}")
+    private long fetchTimeoutMs;
+
+    @Value("${nft.images.max-concurrent-fetches:4}")
+    private int maxConcurrentFetches;
+
+    @Value("${nft.collection.max-token-id:10000}")
+    private int maxTokenId;
+
+    @Value("${nft.images.not-found-ttl-ms:600000}")
+    private long notFoundTtlMs;
+
+    private Path directory;
+    private HttpClient httpClient;
+    private Bulkhead fetches;
+
+    // Cached files by image filename
+    private final Map<String, CachedImage> images = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedImage>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    // Filenames the gateway answered 404 for, with when to ask again
+    private final Map<String, Long> notFoundUntil = new ConcurrentHashMap<>();
+    // Evicted files a response still holds, deleted once released
+    private final ConcurrentLinkedQueue<CachedImage> retired = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder notFoundHits = new LongAdder();
+    private final LongAdder fetchFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder fetchedBytes = new LongAdder();
+
+    public NftImageCache(NftMetadataService metadataService) {
+        this.metadataService = metadataService;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(fetchTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.fetches = new Bulkhead("nft-image-fetch", true, maxConcurrentFetches, 64, fetchTimeoutMs);
+        if (!enabled) {
+            return;
+        }
+        try {
+            directory = Files.createDirectories(Paths.get(cacheDir));
+            loadDirectory();
+            evictIfNeeded();
+            System.out.println("NFT image cache at " + directory + ": " + images.size() + " files, "
+                + cachedBytes.get() / (1024 * 1024) + " MB");
+        } catch (IOException e) {
+            System.err.println("Warning: NFT image cache disabled, cannot use " + cacheDir + ": " + e.getMessage());
+            directory = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled && directory != null;
+    }
+
+    /**
+     * Where the gateway serves a token's image, for when the proxy is disabled
+     */
+    public String getGatewayUrl(int nftId) {
+        return gateway + "/" + metadataService.getImageFilename(nftId);
+    }
+
+    /**
+     * The cached image for a token, fetching it from the gateway on first use.
+     *
+     * @return null if the token ID is out of range or the gateway has no such image
+     * @throws ImageFetchException if the gateway could not be reached or misbehaved
+     */
+    public CachedImage getImage(int nftId) {
+        if (nftId < 0 || nftId > maxTokenId) {
+            return null;
+        }
+        String filename = metadataService.getImageFilename(nftId);
+        CachedImage cached = images.get(filename);
+        if (cached != null && Files.exists(cached.path)) {
+            cached.touch();
+            hits.increment();
+            return cached;
+        }
+        Long retryAt = notFoundUntil.get(filename);
+        if (retryAt != null) {
+            if (System.currentTimeMillis() < retryAt) {
+                notFoundHits.increment();
+                return null;
+            }
+            notFoundUntil.remove(filename, retryAt);
+        }
+
+        CompletableFuture<CachedImage> fetch = new CompletableFuture<>();
+        CompletableFuture<CachedImage> existing = inFlight.putIfAbsent(filename, fetch);
+        if (existing != null) {
+            // Someone else is downloading it: wait for their result
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        misses.increment();
+        try {
+            CachedImage fetched = fetches.call(() -> download(filename));
+            if (fetched != null) {
+                CachedImage previous = images.put(filename, fetched);
+                cachedBytes.addAndGet(fetched.size - (previous != null ? previous.size : 0));
+                evictIfNeeded();
+            } else {
+                notFoundUntil.put(filename, System.currentTimeMillis() + notFoundTtlMs);
+            }
+            fetch.complete(fetched);
+            return fetched;
+        } catch (RuntimeException e) {
+            fetch.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(filename, fetch);
+        }
+    }
+
+    private CachedImage download(String filename) {
+        URI uri = URI.create(gateway + "/" + filename);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(Duration.ofMillis(fetchTimeoutMs))
+            .GET()
+            .build();
+        Path part = null;
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 404) {
+                    notFound.increment();
+                    return null;
+                }
+                if (response.statusCode() != 200) {
+                    throw new ImageFetchException("Gateway returned " + response.statusCode() + " for " + filename);
+                }
+
+                // Hash while writing, so the ETag costs no second pass over the file
+                MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+                part = Files.createTempFile(directory, filename, PART_SUFFIX);
+                long limit = maxImageMb * 1024 * 1024;
+                long size = 0;
+                try (OutputStream out = new DigestOutputStream(Files.newOutputStream(part), sha256)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int n;
+                    while ((n = body.read(buffer)) > 0) {
+                        size += n;
+                        if (size > limit) {
+                            throw new ImageFetchException(filename + " is larger than " + maxImageMb + " MB");
+                        }
+                        out.write(buffer, 0, n);
+                    }
+                }
+
+                String hash = HexFormat.of().formatHex(sha256.digest());
+                Path target = directory.resolve(filename + "." + hash);
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                part = null;
+                fetchedBytes.add(size);
+                return new CachedImage(filename, target, size, hash);
+            }
+        } catch (ImageFetchException e) {
+            fetchFailures.increment();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetchFailures.increment();
+            throw new ImageFetchException("Interrupted fetching " + filename);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            fetchFailures.increment();
+            throw new ImageFetchException("Error fetching " + filename + ": " + e.getMessage());
+        } finally {
+            if (part != null) {
+                try {
+                    Files.deleteIfExists(part);
+                } catch (IOException ignored) {
+                    // Swept at the next startup
+                }
+            }
+        }
+    }
+
+    private void loadDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                int dot = name.lastIndexOf('.');
+                if (dot <= 0 || name.length() - dot - 1 != 64) {
+                    continue;
+                }
+                CachedImage image = new CachedImage(name.substring(0, dot), file, Files.size(file), name.substring(dot + 1));
+                // Serve order across restarts is unknown; start from file age
+                image.lastAccess = System.nanoTime() - Duration.ofMillis(
+                    System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis()).toNanos();
+                CachedImage previous = images.put(image.filename, image);
+                if (previous != null) {
+                    Files.deleteIfExists(previous.path);
+                }
+                cachedBytes.addAndGet(image.size - (previous != null ? previous.size : 0));
+            }
+        }
+    }
+
+    /**
+     * Delete least recently served files until the cache is back under 90% of its limit
+     */
+    private synchronized void evictIfNeeded() {
+        long limit = maxCacheMb * 1024 * 1024;
+        if (cachedBytes.get() <= limit) {
+            return;
+        }
+        List<CachedImage> byAge = new ArrayList<>(images.values());
+        byAge.sort(Comparator.comparingLong(image -> image.lastAccess));
+        long target = limit / 10 * 9;
+        for (CachedImage image : byAge) {
+            if (cachedBytes.get() <= target) {
+                break;
+            }
+            if (images.remove(image.filename, image)) {
+                cachedBytes.addAndGet(-image.size);
+                evictions.increment();
+                if (!image.retire()) {
+                    retired.add(image);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete evicted files whose last response has finished with them
+     */
+    @Scheduled(fixedDelayString = "${nft.images.retired-sweep-ms:10000}")
+    public void sweepRetired() {
+        retired.removeIf(CachedImage::deleteIfUnpinned);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("files", images.size());
+        stats.put("bytes", cachedBytes.get());
+        stats.put("maxBytes", maxCacheMb * 1024 * 1024);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("notFound", notFound.sum());
+        stats.put("notFoundCached", notFoundUntil.size());
+        stats.put("notFoundHits", notFoundHits.sum());
+        stats.put("retired", retired.size());
+        stats.put("fetchFailures", fetchFailures.sum());
+        stats.put("fetchedBytes", fetchedBytes.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("fetchBulkhead", fetches.getStats());
+        return stats;
+    }
+
+    /**
+     * One image file in the cache. The ETag is the SHA-256 of its content.
+     */
+    public static class CachedImage {
+        private final String filename;
+        private final Path path;
+        private final long size;
+        private final String eTag;
+        private volatile long lastAccess = System.nanoTime();
+
+        // Responses serving the file, and until when a handed-off response may still open it
+        private int readers;
+        private long pinnedUntil;
+        private boolean retired;
+        private boolean deleted;
+
+        CachedImage(String filename, Path path, long size, String sha256) {
+            this.filename = filename;
+            this.path = path;
+            this.size = size;
+            this.eTag = "\"" + sha256 + "\"";
+        }
+
+        public String getFilename() { return filename; }
+        public Path getPath() { return path; }
+        public long getSize() { return size; }
+        public String getETag() { return eTag; }
+
+        void touch() { lastAccess = System.nanoTime(); }
+        long getLastAccess() { return lastAccess; }
+
+        /**
+         * Keep the file on disk while a response serves it. False if it is already gone.
+         */
+        public synchronized boolean pin() {
+            if (deleted) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        public synchronized void release() {
+            readers--;
+            deleteIfUnpinned();
+        }
+
+        /**
+         * Release a pin whose file is opened later by someone else (the connector, for
+         * sendfile): the file is kept for another millis after this call
+         */
+        public synchronized void releaseAfter(long millis) {
+            pinnedUntil = Math.max(pinnedUntil, System.currentTimeMillis() + millis);
+            release();
+        }
+
+        /**
+         * Mark the file evicted; true if it could be deleted right away
+         */
+        synchronized boolean retire() {
+            retired = true;
+            return deleteIfUnpinned();
+        }
+
+        synchronized boolean deleteIfUnpinned() {
+            if (!retired || deleted || readers > 0 || System.currentTimeMillis() < pinnedUntil) {
+                return deleted;
+            }
+            deleted = true;
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Error evicting " + path + ": " + e.getMessage());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The gateway could not deliver an image; callers should answer 502
+     */
+    public static class ImageFetchException extends RuntimeException {
+        public ImageFetchException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,18 +1,102 @@
 package com.yourapp.services;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Metadata for the (fixed) collection. Every token up to nft.collection.max-token-id is
+ * built once at startup into an array of shared, immutable {@link TokenMetadata}, each
+ * with its JSON already serialized, so lookups and bulk responses do no per-call work.
+ */
 @Service
 public class NftMetadataService {
     
-    private static final String IPFS_GATEWAY = "https://ipfs.io/ipfs/bafybeife2agzsl2xgnljiiqw732nqfhipfhgnyihwlghmj3esimhzngjce";
+    static final String IPFS_GATEWAY = "https://ipfs.io/ipfs/bafybeife2agzsl2xgnljiiqw732nqfhipfhgnyihwlghmj3esimhzngjce";
+    
+    // Where clients reach this backend, e.g. https://api.example.com. When set, image URLs
+    // point at the caching image proxy (/api/nft/images/{id}) instead of the public gateway
+    @Value("${nft.images.public-base-url:}")
+    private String publicBaseUrl;
+    
+    // Thumbnail sizes generated by NftThumbnailService, offered as size-specific proxy URLs
+    @Value("${nft.thumbnails.enabled:true}")
+    private boolean thumbnailsEnabled;
+    
+    @Value("${nft.thumbnails.sizes:64,128,256}")
+    private int[] thumbnailSizes;
+    
+    // Highest token ID in the precomputed table; metadata for larger IDs is built per call
+    @Value("${nft.collection.max-token-id:10000}")
+    private int maxTokenId;
+    
+    private final ObjectMapper objectMapper;
+    
+    // Indexed by token ID
+    private TokenMetadata[] table = new TokenMetadata[0];
+    
+    public NftMetadataService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+    
+    @PostConstruct
+    public void init() {
+        long start = System.currentTimeMillis();
+        TokenMetadata[] built = new TokenMetadata[Math.max(0, maxTokenId + 1)];
+        long jsonBytes = 0;
+        for (int id = 0; id < built.length; id++) {
+            built[id] = buildMetadata(id);
+            jsonBytes += built[id].json.length;
+        }
+        this.table = built;
+        System.out.println("NFT metadata table built: " + built.length + " tokens, "
+            + jsonBytes / 1024 + " KB of JSON in " + (System.currentTimeMillis() - start) + "ms");
+    }
     
     // Your NFTs follow a simple pattern: {id}.png
     public String getNftImageUrl(Integer nftId) {
+        return getNftMetadata(nftId).getImageUrl();
+    }
+    
+    /**
+     * URL of a token's image scaled to fit size x size pixels. Thumbnails are served by the
+     * image proxy, so without a public base URL (or for a size that isn't generated) this is
+     * the full image URL.
+     */
+    public String getNftImageUrl(Integer nftId, int size) {
+        Map<String, String> thumbnails = getNftMetadata(nftId).getThumbnails();
+        String url = thumbnails != null ? thumbnails.get(Integer.toString(size)) : null;
+        return url != null ? url : getNftImageUrl(nftId);
+    }
+    
+    private Map<String, String> thumbnailUrlsFor(int nftId) {
+        if (publicBaseUrl.isEmpty() || !thumbnailsEnabled || thumbnailSizes.length == 0) {
+            return null;
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (int size : thumbnailSizes) {
+            urls.put(Integer.toString(size), publicBaseUrl + "/api/nft/images/" + nftId + "?size=" + size);
+        }
+        return urls;
+    }
+    
+    private String imageUrlFor(int nftId) {
+        if (!publicBaseUrl.isEmpty()) {
+            return publicBaseUrl + "/api/nft/images/" + nftId;
+        }
         // Files are named simply as 0.png, 1.png, 10.png, 925.png, etc.
-        return IPFS_GATEWAY + "/" + nftId + ".png";
+        return IPFS_GATEWAY + "/" + getImageFilename(nftId);
     }
     
     // Option 4: If names don't follow a pattern, use a mapping
@@ -25,28 +109,90 @@ public class NftMetadataService {
     }};
     
     public String getNftImageUrlFromMap(Integer nftId) {
-        String filename = NFT_FILENAME_MAP.getOrDefault(nftId, nftId + ".png");
-        return IPFS_GATEWAY + "/" + filename;
+        return IPFS_GATEWAY + "/" + getImageFilename(nftId);
+    }
+    
+    /**
+     * File name of a token's image under the collection's IPFS directory
+     */
+    public String getImageFilename(Integer nftId) {
+        return NFT_FILENAME_MAP.getOrDefault(nftId, nftId + ".png");
     }
     
     // Get metadata about the NFT (you could expand this)
-    public Map<String, Object> getNftMetadata(Integer nftId) {
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("id", nftId);
-        metadata.put("imageUrl", getNftImageUrl(nftId));
-        metadata.put("ipfsGateway", IPFS_GATEWAY);
-        
-        // Add rarity tiers or special attributes
+    public TokenMetadata getNftMetadata(Integer nftId) {
+        TokenMetadata[] current = table;
+        if (nftId >= 0 && nftId < current.length) {
+            return current[nftId];
+        }
+        return buildMetadata(nftId);
+    }
+    
+    /**
+     * Write metadata for the given tokens as a JSON array, straight from the precomputed bytes
+     */
+    public void writeMetadataArray(int[] nftIds, OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < nftIds.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(getNftMetadata(nftIds[i]).json);
+        }
+        out.write(']');
+    }
+    
+    public int getMaxTokenId() {
+        return maxTokenId;
+    }
+    
+    private TokenMetadata buildMetadata(int nftId) {
+        TokenMetadata metadata = new TokenMetadata(nftId, imageUrlFor(nftId), thumbnailUrlsFor(nftId), rarityFor(nftId));
+        try {
+            metadata.json = objectMapper.writeValueAsBytes(metadata);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return metadata;
+    }
+    
+    // Add rarity tiers or special attributes
+    private static String rarityFor(int nftId) {
         if (nftId <= 100) {
-            metadata.put("rarity", "Genesis");
+            return "Genesis";
         } else if (nftId <= 500) {
-            metadata.put("rarity", "Rare");
+            return "Rare";
         } else if (nftId <= 1000) {
-            metadata.put("rarity", "Uncommon");
+            return "Uncommon";
         } else {
-            metadata.put("rarity", "Common");
+            return "Common";
         }
+    }
+    
+    /**
+     * Metadata of one token. Instances are shared between requests and never change.
+     */
+    public static class TokenMetadata {
+        private final int id;
+        private final String imageUrl;
+        // Size in pixels -> URL; null when thumbnails aren't served
+        private final Map<String, String> thumbnails;
+        private final String rarity;
+        // Serialized form of this object, set once when it is built
+        byte[] json;
         
-        return metadata;
+        TokenMetadata(int id, String imageUrl, Map<String, String> thumbnails, String rarity) {
+            this.id = id;
+            this.imageUrl = imageUrl;
+            this.thumbnails = thumbnails != null ? Collections.unmodifiableMap(thumbnails) : null;
+            this.rarity = rarity;
+        }
+        
+        public int getId() { return id; }
+        public String getImageUrl() { return imageUrl; }
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public Map<String, String> getThumbnails() { return thumbnails; }
+        public String getIpfsGateway() { return IPFS_GATEWAY; }
+        public String getRarity() { return rarity; }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,294 @@
+package com.yourapp.services;
+
+import com.yourapp.config.SubsquidDatabase;
+import com.yourapp.services.NftService.NftHolderInfo;
+import com.yourapp.services.NftService.TokenIdCollector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Optional in-memory copy of nft_owners, so ownership questions can be answered
+ * without a database round trip.
+ *
+ * Holds token -> owner as an array indexed by nft_id, and owner -> sorted int[] of
+ * token IDs. Built by streaming nft_owners through a fetch-size cursor and rebuilt
+ * periodically; single wallets can be updated in place via {@link #apply}.
+ */
+@Service
+public class NftOwnershipIndex {
+
+    // Guards against a garbage nft_id allocating a huge token array
+    private static final int MAX_TOKEN_ID = 10_000_000;
+
+    private final SubsquidDatabase subsquidDatabase;
+
+    @Value("${nft.index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${nft.index.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${nft.index.query-timeout-seconds:120}")
+    private int queryTimeoutSeconds;
+
+    // Null until the first build completes
+    private volatile State state;
+
+    // Token IDs held across all wallets, kept current by apply so stats don't walk the map
+    private volatile int tokenCount;
+
+    // Wallets applied while a rebuild is streaming, replayed onto the new state. Guarded by this
+    private Map<String, NftHolderInfo> appliesDuringBuild;
+
+    public NftOwnershipIndex(SubsquidDatabase subsquidDatabase) {
+        this.subsquidDatabase = subsquidDatabase;
+    }
+
+    public boolean isReady() {
+        return state != null;
+    }
+
+    /**
+     * Holder info from the index, or null when the index is not built
+     */
+    public NftHolderInfo getNftHolderInfo(String normalizedAddress) {
+        State current = state;
+        if (current == null) {
+            return null;
+        }
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(normalizedAddress);
+        info.setNftIds(current.tokensByOwner.get(normalizedAddress));
+        return info;
+    }
+
+    /**
+     * Current owner of a token, or null if unknown or the index is not built
+     */
+    public String getOwner(int nftId) {
+        State current = state;
+        if (current == null || nftId < 0 || nftId >= current.ownerByToken.length()) {
+            return null;
+        }
+        return current.ownerByToken.get(nftId);
+    }
+
+    /**
+     * Replace one wallet's holdings, e.g. after a refresh or a transfer.
+     * No-op until the index is built, apart from being replayed onto a build in progress.
+     */
+    public synchronized void apply(NftHolderInfo info) {
+        if (appliesDuringBuild != null) {
+            appliesDuringBuild.put(info.getWalletAddress(), info);
+        }
+        applyToState(info);
+    }
+
+    private void applyToState(NftHolderInfo info) {
+        State current = state;
+        if (current == null) {
+            return;
+        }
+        String address = info.getWalletAddress();
+        int[] tokens = info.getNftIdArray();
+
+        int[] previous = tokens.length > 0
+            ? current.tokensByOwner.put(address, tokens)
+            : current.tokensByOwner.remove(address);
+        int count = tokenCount + tokens.length - (previous != null ? previous.length : 0);
+        if (previous != null) {
+            for (int token : previous) {
+                if (Arrays.binarySearch(tokens, token) < 0) {
+                    clearOwner(current.ownerByToken, token, address);
+                }
+            }
+        }
+
+        AtomicReferenceArray<String> owners = current.ownerByToken;
+        if (tokens.length > 0 && tokens[tokens.length - 1] >= owners.length()
+                && tokens[tokens.length - 1] <= MAX_TOKEN_ID) {
+            owners = grow(owners, tokens[tokens.length - 1] + 1);
+            state = current = new State(owners, current.tokensByOwner, current.builtAt, current.tokenCount);
+        }
+        for (int token : tokens) {
+            if (token >= 0 && token < owners.length()) {
+                String oldOwner = owners.getAndSet(token, address);
+                // The token moved: drop it from the previous owner's set
+                if (oldOwner != null && !oldOwner.equals(address)) {
+                    int[] held = current.tokensByOwner.get(oldOwner);
+                    if (held != null && Arrays.binarySearch(held, token) >= 0) {
+                        count--;
+                    }
+                    current.tokensByOwner.computeIfPresent(oldOwner, (k, ids) -> without(ids, token));
+                }
+            }
+        }
+        tokenCount = count;
+    }
+
+    /**
+     * Clear a token's owner if it is still the given address. Addresses are compared by
+     * value: the stored String is whichever instance the scan or an earlier apply put there.
+     */
+    private static void clearOwner(AtomicReferenceArray<String> owners, int token, String address) {
+        if (token < 0 || token >= owners.length()) {
+            return;
+        }
+        String owner;
+        do {
+            owner = owners.get(token);
+            if (!address.equals(owner)) {
+                return;
+            }
+        } while (!owners.compareAndSet(token, owner, null));
+    }
+
+    /**
+     * Rebuild the index from a full nft_owners scan, then swap it in
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${nft.index.refresh-interval-ms:900000}")
+    public void rebuild() {
+        if (!enabled || !subsquidDatabase.isAvailable()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            appliesDuringBuild = new LinkedHashMap<>();
+        }
+        try {
+            State built = load();
+            int replayed;
+            synchronized (this) {
+                // The scan may predate these, so they win over what it read
+                state = built;
+                tokenCount = built.tokenCount;
+                replayed = appliesDuringBuild.size();
+                appliesDuringBuild.values().forEach(this::applyToState);
+            }
+            if (replayed > 0) {
+                System.out.println("NFT ownership index: replayed " + replayed + " wallet updates made during the build");
+            }
+            System.out.println("NFT ownership index built: " + built.tokenCount + " tokens, "
+                + built.tokensByOwner.size() + " wallets in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            System.err.println("Error building NFT ownership index: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                appliesDuringBuild = null;
+            }
+        }
+    }
+
+    /**
+     * Rough heap footprint of the index and its sizes. Constant time: derived from the
+     * wallet and token counts, not by walking the index.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        State current = state;
+        stats.put("enabled", enabled);
+        stats.put("ready", current != null);
+        if (current == null) {
+            stats.put("wallets", 0);
+            stats.put("tokens", 0);
+            stats.put("tokenCapacity", 0);
+            stats.put("estimatedBytes", 0L);
+            stats.put("builtAt", null);
+            return stats;
+        }
+
+        int wallets = current.tokensByOwner.size();
+        int tokens = tokenCount;
+        // Token array, then per wallet an int[] header, map node and a 42 char latin-1 address
+        // String, the int[] data, and the map's table
+        long bytes = 16L + 4L * current.ownerByToken.length()
+            + (16L + 32L + 88L) * wallets + 4L * tokens
+            + 4L * Integer.highestOneBit(Math.max(wallets, 1) * 2);
+
+        stats.put("wallets", wallets);
+        stats.put("tokens", tokens);
+        stats.put("tokenCapacity", current.ownerByToken.length());
+        stats.put("estimatedBytes", bytes);
+        stats.put("builtAt", current.builtAt);
+        return stats;
+    }
+
+    private State load() {
+        Map<String, TokenIdCollector> collectors = new HashMap<>();
+        StreamingQuery.streamQuery(subsquidDatabase.getDataSource(), "SELECT owner_id, nft_id FROM nft_owners",
+            fetchSize, queryTimeoutSeconds, (ResultSet rs) -> {
+                String owner = rs.getString(1);
+                if (owner != null) {
+                    collectors.computeIfAbsent(owner, k -> new TokenIdCollector()).processRow(rs, 2);
+                }
+            });
+
+        Map<String, int[]> tokensByOwner = new ConcurrentHashMap<>(collectors.size() * 2);
+        int maxToken = -1;
+        int tokens = 0;
+        for (Map.Entry<String, TokenIdCollector> entry : collectors.entrySet()) {
+            int[] ids = entry.getValue().toArray();
+            if (ids.length > 0) {
+                tokensByOwner.put(entry.getKey(), ids);
+                tokens += ids.length;
+                maxToken = Math.max(maxToken, Math.min(ids[ids.length - 1], MAX_TOKEN_ID));
+            }
+        }
+
+        AtomicReferenceArray<String> ownerByToken = new AtomicReferenceArray<>(maxToken + 1);
+        for (Map.Entry<String, int[]> entry : tokensByOwner.entrySet()) {
+            for (int token : entry.getValue()) {
+                if (token >= 0 && token <= maxToken) {
+                    ownerByToken.set(token, entry.getKey());
+                }
+            }
+        }
+        return new State(ownerByToken, tokensByOwner, System.currentTimeMillis(), tokens);
+    }
+
+    private static AtomicReferenceArray<String> grow(AtomicReferenceArray<String> owners, int length) {
+        AtomicReferenceArray<String> grown = new AtomicReferenceArray<>(length);
+        for (int i = 0; i < owners.length(); i++) {
+            grown.set(i, owners.get(i));
+        }
+        return grown;
+    }
+
+    private static int[] without(int[] ids, int token) {
+        int pos = Arrays.binarySearch(ids, token);
+        if (pos < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, pos);
+        System.arraycopy(ids, pos + 1, result, pos, ids.length - pos - 1);
+        return result;
+    }
+
+    private static final class State {
+        final AtomicReferenceArray<String> ownerByToken;
+        // Sorted token IDs per normalized owner; arrays are replaced, never mutated
+        final Map<String, int[]> tokensByOwner;
+        final long builtAt;
+        final int tokenCount;
+
+        State(AtomicReferenceArray<String> ownerByToken, Map<String, int[]> tokensByOwner, long builtAt, int tokenCount) {
+            this.ownerByToken = ownerByToken;
+            this.tokensByOwner = tokensByOwner;
+            this.builtAt = builtAt;
+            this.tokenCount = tokenCount;
+        }
+    }
+}
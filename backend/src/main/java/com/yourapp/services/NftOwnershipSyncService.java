@@ -0,0 +1,245 @@
+package com.yourapp.services;
+
+import com.yourapp.config.CircuitBreaker.CircuitOpenException;
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.config.SubsquidDatabase;
+import com.yourapp.models.SyncCursor;
+import com.yourapp.repositories.SyncCursorRepository;
+import com.yourapp.services.NftService.NftHolderInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Background worker that follows ownership changes in Subsquid instead of
+ * re-reading every wallet on login.
+ *
+ * Each poll reads transfers past a persisted cursor (block height) in small block
+ * ranges, re-reads the affected wallets with one set-based query and updates their
+ * users rows, the ownership cache and the ownership index. While the worker is caught
+ * up, UserService skips the Subsquid query for returning users.
+ *
+ * Subsquid queries go through the same bulkhead and circuit breaker as the ownership
+ * lookups, and cursor reads and writes through the users bulkhead.
+ */
+@Service
+public class NftOwnershipSyncService {
+
+    private static final String CURSOR_NAME = "nft-ownership";
+    private static final Pattern IDENTIFIER = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]*$");
+    private static final String ZERO_ADDRESS = "0x0000000000000000000000000000000000000000";
+
+    private final SubsquidDatabase subsquidDatabase;
+    private final NftService nftService;
+    private final UserService userService;
+    private final SyncCursorRepository cursorRepository;
+    private final DatabaseBulkheads bulkheads;
+
+    @Value("${nft.sync.enabled:false}")
+    private boolean enabled;
+
+    // Subsquid table with one row per transfer, and its block / from / to columns
+    @Value("${nft.sync.changes-table:transfer}")
+    private String changesTable;
+
+    @Value("${nft.sync.block-column:block_number}")
+    private String blockColumn;
+
+    @Value("${nft.sync.from-column:from_id}")
+    private String fromColumn;
+
+    @Value("${nft.sync.to-column:to_id}")
+    private String toColumn;
+
+    @Value("${nft.sync.batch-blocks:200}")
+    private long batchBlocks;
+
+    // Lag beyond which the worker switches to catch-up mode and logins query Subsquid again
+    @Value("${nft.sync.max-lag-blocks:50}")
+    private long maxLagBlocks;
+
+    @Value("${nft.sync.catch-up-batch-blocks:5000}")
+    private long catchUpBatchBlocks;
+
+    // Upper bound on one catch-up poll, so the scheduler thread is released regularly
+    @Value("${nft.sync.catch-up-max-millis:30000}")
+    private long catchUpMaxMillis;
+
+    private volatile long cursorPosition = -1;
+    private volatile long headPosition = -1;
+    private volatile boolean catchingUp;
+    private volatile LocalDateTime lastPollAt;
+    private volatile long lastPollMillis;
+    private volatile String lastError;
+    // Set once this process has seen the feed fail or fall behind, see markCurrent
+    private boolean hadGap;
+    private long changedWallets;
+    private long updatedUsers;
+
+    public NftOwnershipSyncService(SubsquidDatabase subsquidDatabase, NftService nftService,
+                                   UserService userService, SyncCursorRepository cursorRepository,
+                                   DatabaseBulkheads bulkheads) {
+        this.subsquidDatabase = subsquidDatabase;
+        this.nftService = nftService;
+        this.userService = userService;
+        this.cursorRepository = cursorRepository;
+        this.bulkheads = bulkheads;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String identifier : new String[] {changesTable, blockColumn, fromColumn, toColumn}) {
+            if (!IDENTIFIER.matcher(identifier).matches()) {
+                throw new IllegalStateException("Invalid nft.sync identifier: " + identifier);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${nft.sync.poll-interval-ms:15000}")
+    public void poll() {
+        if (!enabled || !subsquidDatabase.isAvailable()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            JdbcTemplate subsquid = subsquidDatabase.getJdbcTemplate();
+            Long head = nftService.callSubsquid(() -> subsquid.queryForObject(
+                "SELECT MAX(" + blockColumn + ") FROM " + changesTable, Long.class));
+            if (head == null) {
+                return;
+            }
+            headPosition = head;
+
+            // First run: start from the head. Users computed before this point are
+            // re-read on their next login, see NftService#getChangeFeedTrustedSince.
+            SyncCursor cursor = bulkheads.users().call(() -> cursorRepository.findById(CURSOR_NAME).orElseGet(() -> {
+                SyncCursor created = new SyncCursor();
+                created.setName(CURSOR_NAME);
+                created.setPosition(head);
+                created.setUpdatedAt(LocalDateTime.now());
+                return cursorRepository.save(created);
+            }));
+            cursorPosition = cursor.getPosition();
+
+            catchingUp = head - cursorPosition > maxLagBlocks;
+            if (catchingUp) {
+                // Stored user state may be stale until we catch up
+                markBehind();
+            }
+
+            do {
+                long step = catchingUp ? catchUpBatchBlocks : batchBlocks;
+                long to = Math.min(head, cursorPosition + step);
+                if (to <= cursorPosition) {
+                    break;
+                }
+                applyRange(cursorPosition, to);
+
+                cursor.setPosition(to);
+                cursor.setUpdatedAt(LocalDateTime.now());
+                SyncCursor advanced = cursor;
+                cursor = bulkheads.users().call(() -> cursorRepository.save(advanced));
+                cursorPosition = to;
+            } while (cursorPosition < head && System.currentTimeMillis() - start < catchUpMaxMillis);
+
+            catchingUp = head - cursorPosition > maxLagBlocks;
+            if (catchingUp) {
+                markBehind();
+            } else {
+                markCurrent(cursor);
+            }
+            lastError = null;
+        } catch (CircuitOpenException e) {
+            // Subsquid is known to be failing; the breaker already logged it
+            lastError = e.getMessage();
+            markBehind();
+        } catch (Exception e) {
+            System.err.println("Error syncing NFT ownership changes: " + e.getMessage());
+            lastError = e.getMessage();
+            markBehind();
+        } finally {
+            lastPollAt = LocalDateTime.now();
+            lastPollMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    private void markBehind() {
+        hadGap = true;
+        nftService.setChangeFeedTrustedSince(null);
+    }
+
+    /**
+     * The feed is current. Without a gap in this process it has covered everything since
+     * the cursor was created. After a failure or lag, only holdings verified from now on
+     * count as current, so users whose state predates the gap are re-read once on login.
+     */
+    private void markCurrent(SyncCursor cursor) {
+        if (nftService.getChangeFeedTrustedSince() == null) {
+            nftService.setChangeFeedTrustedSince(hadGap ? LocalDateTime.now() : cursor.getCreatedAt());
+        }
+    }
+
+    /**
+     * Re-read and apply every wallet touched by a transfer in blocks (from, to]
+     */
+    private void applyRange(long from, long to) {
+        Set<String> wallets = new HashSet<>();
+        nftService.callSubsquid(() -> {
+            subsquidDatabase.getJdbcTemplate().query(
+                "SELECT " + fromColumn + ", " + toColumn + " FROM " + changesTable
+                    + " WHERE " + blockColumn + " > ? AND " + blockColumn + " <= ?",
+                (ResultSet rs) -> {
+                    addWallet(wallets, rs.getString(1));
+                    addWallet(wallets, rs.getString(2));
+                },
+                from, to);
+            return null;
+        });
+        if (wallets.isEmpty()) {
+            return;
+        }
+
+        Map<String, NftHolderInfo> holders = nftService.refreshNftHolderInfos(wallets);
+        int users = bulkheads.users().call(() -> userService.applyOwnershipChanges(holders.values()));
+        synchronized (this) {
+            changedWallets += wallets.size();
+            updatedUsers += users;
+        }
+    }
+
+    private static void addWallet(Set<String> wallets, String address) {
+        String normalized = NftService.normalizeAddress(address);
+        if (normalized != null && !normalized.equals(ZERO_ADDRESS)) {
+            wallets.add(normalized);
+        }
+    }
+
+    /**
+     * Cursor, head and lag of the change feed
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("cursor", cursorPosition);
+        stats.put("head", headPosition);
+        stats.put("lagBlocks", cursorPosition < 0 || headPosition < 0 ? null : headPosition - cursorPosition);
+        stats.put("catchingUp", catchingUp);
+        stats.put("trustedSince", nftService.getChangeFeedTrustedSince());
+        stats.put("lastPollAt", lastPollAt);
+        stats.put("lastPollMillis", lastPollMillis);
+        stats.put("lastError", lastError);
+        stats.put("changedWallets", changedWallets);
+        stats.put("updatedUsers", updatedUsers);
+        return stats;
+    }
+}
@@ -1,55 +1,175 @@
 package com.yourapp.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.yourapp.config.Bulkhead.BulkheadFullException;
+import com.yourapp.config.CircuitBreaker;
+import com.yourapp.config.CircuitBreaker.CircuitOpenException;
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.config.SubsquidDatabase;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 @Service
 public class NftService {
     
-    private JdbcTemplate subsquidJdbcTemplate;
+    private static final Pattern ADDRESS_PATTERN = Pattern.compile("^0x[0-9a-f]{40}$");
     
-    @Value("${subsquid.db.url:jdbc:postgresql://localhost:5433/postgres}")
-    private String subsquidDbUrl;
+    // Both filter on the raw owner_id column, see queryNftHolderInfo
+    static final String HOLDER_SQL = "SELECT nft_id FROM nft_owners WHERE owner_id = ?";
+    static final String HOLDERS_SQL = "SELECT owner_id, nft_id FROM nft_owners WHERE owner_id = ANY(?)";
     
-    @Value("${subsquid.db.username:postgres}")
-    private String subsquidDbUsername;
+    private final SubsquidDatabase subsquidDatabase;
+    private final NftOwnershipIndex ownershipIndex;
+    private final DatabaseBulkheads bulkheads;
     
-    @Value("${subsquid.db.password:postgres}")
-    private String subsquidDbPassword;
+    @Value("${nft.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+    
+    @Value("${nft.cache.max-size:10000}")
+    private long cacheMaxSize;
+    
+    @Value("${nft.batch.max-size:100}")
+    private int batchMaxSize;
+    
+    // Background ownership lookups started during login, see prefetchNftHolderInfo
+    @Value("${nft.prefetch.threads:4}")
+    private int prefetchThreads;
+    
+    @Value("${nft.prefetch.queue-capacity:64}")
+    private int prefetchQueueCapacity;
+    
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    // Circuit breaker around Subsquid queries, see CircuitBreaker
+    @Value("${subsquid.breaker.enabled:true}")
+    private boolean breakerEnabled;
+    
+    @Value("${subsquid.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+    
+    @Value("${subsquid.breaker.slow-call-ms:2000}")
+    private long breakerSlowCallMs;
+    
+    @Value("${subsquid.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+    
+    @Value("${subsquid.breaker.half-open-probes:1}")
+    private int breakerHalfOpenProbes;
+    
+    // How long a wallet's last successful lookup may stand in while Subsquid can't be read
+    @Value("${nft.stale.ttl-seconds:86400}")
+    private long staleTtlSeconds;
+    
+    @Value("${nft.stale.max-size:${nft.cache.max-size:10000}}")
+    private long staleMaxSize;
+    
+    private ExecutorService prefetchExecutor;
+    
+    private CircuitBreaker breaker;
+    
+    // Holder info keyed by normalized wallet address. Cached instances are shared, treat them as read-only.
+    // Never holds stale entries, so a failed lookup is retried on the next call.
+    private LoadingCache<String, NftHolderInfo> holderCache;
+    
+    // Last successful lookup per wallet, outliving holderCache; the fallback while Subsquid is failing
+    private Cache<String, NftHolderInfo> lastKnown;
+    
+    private final LongAdder staleServed = new LongAdder();
+    
+    private volatile LocalDateTime changeFeedTrustedSince;
+    
+    public NftService(SubsquidDatabase subsquidDatabase, NftOwnershipIndex ownershipIndex,
+                      DatabaseBulkheads bulkheads) {
+        this.subsquidDatabase = subsquidDatabase;
+        this.ownershipIndex = ownershipIndex;
+        this.bulkheads = bulkheads;
+    }
     
     @PostConstruct
     public void init() {
-        try {
-            // Create a simple DriverManagerDataSource for production
-            // This avoids connection pool issues with Supabase limits
-            DriverManagerDataSource dataSource = new DriverManagerDataSource();
-            dataSource.setDriverClassName("org.postgresql.Driver");
-            dataSource.setUrl(subsquidDbUrl);
-            dataSource.setUsername(subsquidDbUsername);
-            dataSource.setPassword(subsquidDbPassword);
-            
-            this.subsquidJdbcTemplate = new JdbcTemplate(dataSource);
-            
-            System.out.println("SubsquidNftService initialized for production");
-            
-            // Test the connection
-            subsquidJdbcTemplate.queryForObject("SELECT 1", Integer.class);
-            System.out.println("Subsquid database connection successful");
-        } catch (Exception e) {
-            System.err.println("Warning: Could not connect to Subsquid database: " + e.getMessage());
-            System.err.println("NFT functionality will be limited. Using fallback data.");
-            this.subsquidJdbcTemplate = null;
+        this.breaker = new CircuitBreaker("subsquid", breakerEnabled, breakerFailureThreshold,
+            breakerSlowCallMs, breakerOpenMs, breakerHalfOpenProbes);
+        this.lastKnown = Caffeine.newBuilder()
+            .maximumSize(staleMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(staleTtlSeconds))
+            .build();
+        this.holderCache = Caffeine.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+            .recordStats()
+            .build(new CacheLoader<String, NftHolderInfo>() {
+                @Override
+                public NftHolderInfo load(String address) {
+                    return queryNftHolderInfo(address);
+                }
+                
+                @Override
+                public Map<String, NftHolderInfo> loadAll(Set<? extends String> addresses) {
+                    return queryNftHolderInfos(addresses);
+                }
+            });
+        
+        if (virtualThreads) {
+            // Lookups block on JDBC; the Subsquid bulkhead already bounds how many run at once
+            this.prefetchExecutor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("nft-prefetch-", 0).factory());
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.prefetchExecutor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(prefetchQueueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "nft-prefetch-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
         }
     }
     
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+    
     /**
      * Check if a wallet owns any NFTs
      */
@@ -57,126 +177,500 @@ public class NftService {
         return getNftCount(walletAddress) > 0;
     }
     
+    /**
+     * Check if a wallet owns a specific NFT
+     */
+    public boolean ownsNft(String walletAddress, int nftId) {
+        return getNftHolderInfo(walletAddress).ownsToken(nftId);
+    }
+    
     /**
      * Get the count of NFTs owned by a wallet
      */
     public int getNftCount(String walletAddress) {
-        if (subsquidJdbcTemplate == null) {
-            System.out.println("Subsquid database not available, returning 0 NFT count");
-            return 0;
+        return getNftHolderInfo(walletAddress).getNftCount();
+    }
+    
+    /**
+     * Get all NFT token IDs owned by a wallet
+     */
+    public List<BigInteger> getNftTokenIds(String walletAddress, int limit) {
+        int[] ids = getNftHolderInfo(walletAddress).getNftIdArray();
+        int n = Math.min(ids.length, Math.max(limit, 0));
+        List<BigInteger> tokenIds = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            tokenIds.add(BigInteger.valueOf(ids[i]));
+        }
+        return tokenIds;
+    }
+    
+    /**
+     * Get detailed NFT information for a wallet, served from the ownership cache when possible.
+     * Concurrent lookups for the same wallet share a single query.
+     * When Subsquid can't be read (down, failing, or the circuit is open) the result is the
+     * wallet's last known holdings, or an empty holder, flagged stale.
+     */
+    public NftHolderInfo getNftHolderInfo(String walletAddress) {
+        String address = normalizeAddress(walletAddress);
+        NftHolderInfo indexed = ownershipIndex.getNftHolderInfo(address);
+        if (indexed != null) {
+            return indexed;
+        }
+        if (!subsquidDatabase.isAvailable()) {
+            System.out.println("Subsquid database not available, returning stale NFT info for: " + address);
+            return staleHolderInfo(address);
         }
         
         try {
-            String sql = "SELECT COUNT(*) FROM nft_owners WHERE LOWER(owner_id) = LOWER(?)";
-            Integer count = subsquidJdbcTemplate.queryForObject(sql, Integer.class, walletAddress);
-            return count != null ? count : 0;
+            return holderCache.get(address);
+        } catch (BulkheadFullException e) {
+            throw e;
+        } catch (CircuitOpenException e) {
+            return staleHolderInfo(address);
         } catch (Exception e) {
-            System.err.println("Error getting NFT count for " + walletAddress + ": " + e.getMessage());
-            return 0;
+            // Failed loads are not cached, so the next call retries the query
+            System.err.println("Error getting holder info for " + address + ": " + e.getMessage());
+            return staleHolderInfo(address);
         }
     }
     
     /**
-     * Get all NFT token IDs owned by a wallet
+     * Start a wallet lookup in the background, so it can overlap other work. The login
+     * is not proven yet, so the result is kept out of the caches until the caller hands
+     * it to acceptPrefetched; cancelling the future drops the task if it has not started.
+     * Returns null when the prefetch pool is saturated; callers then look the wallet up inline.
      */
-    public List<BigInteger> getNftTokenIds(String walletAddress, int limit) {
-        List<BigInteger> tokenIds = new ArrayList<>();
+    public CompletableFuture<NftHolderInfo> prefetchNftHolderInfo(String walletAddress) {
+        String address = normalizeAddress(walletAddress);
+        CompletableFuture<NftHolderInfo> result = new CompletableFuture<>();
+        Future<?> task;
         try {
-            String sql = "SELECT nft_id FROM nft_owners WHERE LOWER(owner_id) = LOWER(?) ORDER BY nft_id::integer ASC";
-            
-            List<Map<String, Object>> results = subsquidJdbcTemplate.queryForList(sql, walletAddress);
-            
-            for (Map<String, Object> row : results) {
-                String id = (String) row.get("nft_id");
-                if (id != null) {
-                    tokenIds.add(new BigInteger(id));
+            task = prefetchExecutor.submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(lookupNftHolderInfo(address));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
                 }
-                if (tokenIds.size() >= limit) break;
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        result.whenComplete((info, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(false);
             }
+        });
+        return result;
+    }
+    
+    /**
+     * Store a prefetched lookup once the login it was started for has been verified
+     */
+    public void acceptPrefetched(NftHolderInfo info) {
+        if (info != null && !info.isStale()) {
+            holderCache.put(info.getWalletAddress(), info);
+            lastKnown.put(info.getWalletAddress(), info);
+        }
+    }
+    
+    /**
+     * getNftHolderInfo without writing to holderCache or lastKnown
+     */
+    private NftHolderInfo lookupNftHolderInfo(String address) {
+        NftHolderInfo indexed = ownershipIndex.getNftHolderInfo(address);
+        if (indexed != null) {
+            return indexed;
+        }
+        NftHolderInfo cached = holderCache.getIfPresent(address);
+        if (cached != null) {
+            return cached;
+        }
+        if (!subsquidDatabase.isAvailable()) {
+            return staleHolderInfo(address);
+        }
+        
+        try {
+            return readNftHolderInfo(address);
+        } catch (BulkheadFullException e) {
+            throw e;
+        } catch (CircuitOpenException e) {
+            return staleHolderInfo(address);
         } catch (Exception e) {
-            System.err.println("Error getting NFT token IDs for " + walletAddress + ": " + e.getMessage());
+            System.err.println("Error prefetching holder info for " + address + ": " + e.getMessage());
+            return staleHolderInfo(address);
         }
-        return tokenIds;
     }
     
     /**
-     * Get detailed NFT information for a wallet
+     * Get NFT information for a wallet straight from Subsquid, bypassing the cache,
+     * and store the fresh result for later lookups. Falls back like getNftHolderInfo.
      */
-    public NftHolderInfo getNftHolderInfo(String walletAddress) {
-        NftHolderInfo info = new NftHolderInfo();
-        info.setWalletAddress(walletAddress);
+    public NftHolderInfo refreshNftHolderInfo(String walletAddress) {
+        String address = normalizeAddress(walletAddress);
+        if (!subsquidDatabase.isAvailable()) {
+            System.out.println("Subsquid database not available, returning stale NFT info for: " + address);
+            return staleHolderInfo(address);
+        }
         
-        if (subsquidJdbcTemplate == null) {
-            System.out.println("Subsquid database not available, returning empty NFT info for: " + walletAddress);
-            info.setNftCount(0);
-            info.setHasNft(false);
-            info.setNftIds(new ArrayList<>());
+        try {
+            NftHolderInfo info = queryNftHolderInfo(address);
+            holderCache.put(address, info);
+            ownershipIndex.apply(info);
             return info;
+        } catch (BulkheadFullException e) {
+            throw e;
+        } catch (CircuitOpenException e) {
+            return staleHolderInfo(address);
+        } catch (Exception e) {
+            System.err.println("Error refreshing holder info for " + address + ": " + e.getMessage());
+            return staleHolderInfo(address);
+        }
+    }
+    
+    /**
+     * Re-read many wallets from Subsquid with one set-based query, bypassing the cache,
+     * and store the fresh results in the cache and ownership index.
+     * Unlike getNftHolderInfos, failures propagate to the caller.
+     */
+    public Map<String, NftHolderInfo> refreshNftHolderInfos(Collection<String> normalizedAddresses) {
+        if (normalizedAddresses.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, NftHolderInfo> holders = queryNftHolderInfos(normalizedAddresses);
+        holderCache.putAll(holders);
+        for (NftHolderInfo info : holders.values()) {
+            ownershipIndex.apply(info);
+        }
+        return holders;
+    }
+    
+    /**
+     * While the ownership sync worker is caught up, stored user NFT state that was computed
+     * after the returned time is current. Null when the change feed is not running or lagging.
+     */
+    public LocalDateTime getChangeFeedTrustedSince() {
+        return changeFeedTrustedSince;
+    }
+    
+    public void setChangeFeedTrustedSince(LocalDateTime changeFeedTrustedSince) {
+        this.changeFeedTrustedSince = changeFeedTrustedSince;
+    }
+    
+    /**
+     * Run another Subsquid query (e.g. the change feed's) behind the same bulkhead and
+     * circuit breaker as the ownership lookups
+     */
+    <T> T callSubsquid(Supplier<T> query) {
+        return bulkheads.subsquid().call(() -> breaker.call(query));
+    }
+    
+    /**
+     * Current owner of a token (normalized address), or null if unknown.
+     * Only answered from the in-memory ownership index.
+     */
+    public String getOwnerOf(int nftId) {
+        return ownershipIndex.getOwner(nftId);
+    }
+    
+    /**
+     * Get NFT information for many wallets at once. Cached wallets are answered from memory,
+     * the rest are resolved together with one set-based query.
+     * Invalid addresses and failed lookups are reported per wallet instead of failing the batch;
+     * wallets with a last known result get that, flagged stale, instead of an error.
+     */
+    public BatchHolderResult getNftHolderInfos(Collection<String> walletAddresses) {
+        if (walletAddresses.size() > batchMaxSize) {
+            throw new IllegalArgumentException("Batch size exceeds maximum of " + batchMaxSize);
         }
         
-        try {
-            // Get all NFT IDs owned by this wallet from nft_owners table
-            String sql = "SELECT nft_id FROM nft_owners WHERE LOWER(owner_id) = LOWER(?) ORDER BY nft_id::integer ASC";
-            List<Map<String, Object>> results = subsquidJdbcTemplate.queryForList(sql, walletAddress);
-            
-            List<Integer> nftIds = new ArrayList<>();
-            for (Map<String, Object> row : results) {
-                String id = (String) row.get("nft_id");
-                if (id != null) {
-                    try {
-                        nftIds.add(Integer.parseInt(id));
-                    } catch (NumberFormatException e) {
-                        System.err.println("Skipping non-numeric NFT ID: " + id);
-                    }
-                }
+        BatchHolderResult result = new BatchHolderResult();
+        Set<String> addresses = new LinkedHashSet<>();
+        for (String walletAddress : walletAddresses) {
+            String address = normalizeAddress(walletAddress);
+            if (address == null || !ADDRESS_PATTERN.matcher(address).matches()) {
+                result.getErrors().put(String.valueOf(walletAddress), "Invalid address");
+            } else {
+                addresses.add(address);
             }
-            
-            info.setNftIds(nftIds);
-            info.setNftCount(nftIds.size());
-            info.setHasNft(nftIds.size() > 0);
-            
-            // If they own NFTs, get the first one for profile display
-            if (!nftIds.isEmpty()) {
-                info.setPrimaryNftId(nftIds.get(0));
+        }
+        if (addresses.isEmpty()) {
+            return result;
+        }
+        
+        if (ownershipIndex.isReady()) {
+            for (String address : addresses) {
+                result.getHolders().put(address, ownershipIndex.getNftHolderInfo(address));
             }
-            
-            System.out.println("Found " + nftIds.size() + " NFTs for wallet: " + walletAddress);
-            
-        } catch (Exception e) {
-            System.err.println("Error getting holder info for " + walletAddress + ": " + e.getMessage());
-            e.printStackTrace();
-            info.setNftCount(0);
-            info.setHasNft(false);
-            info.setNftIds(new ArrayList<>());
+            return result;
         }
         
+        if (!subsquidDatabase.isAvailable()) {
+            putStaleOrError(result, addresses, "NFT ownership data unavailable");
+            return result;
+        }
+        
+        Map<String, NftHolderInfo> cached = holderCache.getAllPresent(addresses);
+        result.getHolders().putAll(cached);
+        
+        Set<String> missing = new LinkedHashSet<>(addresses);
+        missing.removeAll(cached.keySet());
+        if (!missing.isEmpty()) {
+            try {
+                result.getHolders().putAll(holderCache.getAll(missing));
+            } catch (BulkheadFullException e) {
+                throw e;
+            } catch (CircuitOpenException e) {
+                putStaleOrError(result, missing, "NFT ownership data unavailable");
+            } catch (Exception e) {
+                System.err.println("Error getting holder info for batch of " + missing.size() + ": " + e.getMessage());
+                putStaleOrError(result, missing, "NFT ownership lookup failed");
+            }
+        }
+        return result;
+    }
+    
+    private void putStaleOrError(BatchHolderResult result, Collection<String> addresses, String error) {
+        for (String address : addresses) {
+            NftHolderInfo known = lastKnown.getIfPresent(address);
+            if (known != null) {
+                staleServed.increment();
+                result.getHolders().put(address, known.staleCopy());
+            } else {
+                result.getErrors().put(address, error);
+            }
+        }
+    }
+    
+    /**
+     * The wallet's last known holdings flagged stale, or an empty holder flagged stale
+     */
+    private NftHolderInfo staleHolderInfo(String address) {
+        staleServed.increment();
+        NftHolderInfo known = lastKnown.getIfPresent(address);
+        return known != null ? known.staleCopy() : emptyHolderInfo(address).staleCopy();
+    }
+    
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+    
+    /**
+     * Hit/miss/eviction counters for the ownership cache
+     */
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = holderCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", holderCache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("loadFailures", stats.loadFailureCount());
+        result.put("averageLoadMillis", stats.averageLoadPenalty() / 1_000_000.0);
+        return result;
+    }
+    
+    /**
+     * Circuit breaker state and how often stale holdings were served in place of a lookup
+     */
+    public Map<String, Object> getBreakerStats() {
+        Map<String, Object> result = new LinkedHashMap<>(breaker.getStats());
+        result.put("staleServed", staleServed.sum());
+        result.put("lastKnownSize", lastKnown.estimatedSize());
+        return result;
+    }
+    
+    /**
+     * Canonical form used for cache keys: trimmed and lower-cased
+     */
+    public static String normalizeAddress(String walletAddress) {
+        return walletAddress == null ? null : walletAddress.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * One round trip per wallet: the ID rows give the count, the sorted IDs and the
+     * primary (lowest) ID together. Rows are streamed straight into an int[], no per-row maps.
+     *
+     * The address must already be normalized - the filter is on the raw owner_id column so
+     * the owner index (db/subsquid/nft_owners_indexes.sql) applies, and the numeric sort is
+     * done here on the int[] instead of in the database.
+     */
+    private NftHolderInfo queryNftHolderInfo(String walletAddress) {
+        NftHolderInfo info = readNftHolderInfo(walletAddress);
+        lastKnown.put(walletAddress, info);
+        return info;
+    }
+    
+    private NftHolderInfo readNftHolderInfo(String walletAddress) {
+        JdbcTemplate subsquidJdbcTemplate = subsquidDatabase.getJdbcTemplate();
+        
+        TokenIdCollector collector = new TokenIdCollector();
+        // Breaker inside the bulkhead, so slow-call timing covers the query and not the queue
+        bulkheads.subsquid().run(() -> breaker.run(() -> subsquidJdbcTemplate.query(HOLDER_SQL, collector, walletAddress)));
+        
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(walletAddress);
+        info.setNftIds(collector.toArray());
         return info;
     }
     
     /**
-     * Helper class to hold NFT holder information
+     * Set-based variant of queryNftHolderInfo: one owner_id = ANY(?) query for all wallets,
+     * rows grouped per owner in memory. Wallets without rows get an empty holder.
+     */
+    private Map<String, NftHolderInfo> queryNftHolderInfos(Collection<? extends String> walletAddresses) {
+        JdbcTemplate subsquidJdbcTemplate = subsquidDatabase.getJdbcTemplate();
+        String[] addresses = walletAddresses.toArray(new String[0]);
+        
+        Map<String, TokenIdCollector> collectors = new HashMap<>();
+        bulkheads.subsquid().run(() -> breaker.run(() -> subsquidJdbcTemplate.query(HOLDERS_SQL,
+            ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", addresses)),
+            (ResultSet rs) -> {
+                String owner = rs.getString(1);
+                collectors.computeIfAbsent(owner, k -> new TokenIdCollector()).processRow(rs, 2);
+            })));
+        
+        Map<String, NftHolderInfo> holders = new HashMap<>();
+        for (String address : addresses) {
+            NftHolderInfo info = new NftHolderInfo();
+            info.setWalletAddress(address);
+            TokenIdCollector collector = collectors.get(address);
+            if (collector != null) {
+                info.setNftIds(collector.toArray());
+            }
+            holders.put(address, info);
+        }
+        lastKnown.putAll(holders);
+        return holders;
+    }
+    
+    private static NftHolderInfo emptyHolderInfo(String walletAddress) {
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(walletAddress);
+        return info;
+    }
+    
+    /**
+     * Streams nft_id values into a growable int[] without boxing
+     */
+    static class TokenIdCollector implements RowCallbackHandler {
+        private int[] ids = new int[16];
+        private int size;
+        
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            processRow(rs, 1);
+        }
+        
+        void processRow(ResultSet rs, int column) throws SQLException {
+            int id;
+            try {
+                // pgjdbc parses the text column in place, no intermediate String
+                id = rs.getInt(column);
+            } catch (SQLException e) {
+                System.err.println("Skipping non-numeric NFT ID: " + rs.getString(column));
+                return;
+            }
+            // getInt reads SQL NULL as 0, which is a real token ID
+            if (rs.wasNull()) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+        
+        /**
+         * Collected IDs in ascending numeric order
+         */
+        int[] toArray() {
+            if (size == 0) {
+                return NftHolderInfo.NO_IDS;
+            }
+            int[] result = Arrays.copyOf(ids, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+    
+    /**
+     * Per-wallet results of a batch lookup, plus the wallets that could not be resolved
+     */
+    public static class BatchHolderResult {
+        private final Map<String, NftHolderInfo> holders = new LinkedHashMap<>();
+        private final Map<String, String> errors = new LinkedHashMap<>();
+        
+        public Map<String, NftHolderInfo> getHolders() { return holders; }
+        
+        public Map<String, String> getErrors() { return errors; }
+    }
+    
+    /**
+     * Helper class to hold NFT holder information.
+     * Token IDs are kept as a sorted int[]; count, hasNft and primary ID are derived from it.
      */
     public static class NftHolderInfo {
+        static final int[] NO_IDS = new int[0];
+        
         private String walletAddress;
-        private boolean hasNft;
-        private int nftCount;
-        private List<Integer> nftIds;
-        private Integer primaryNftId; // For profile display
+        private int[] nftIds = NO_IDS;
+        private boolean stale;
         
-        // Getters and setters
         public String getWalletAddress() { return walletAddress; }
         public void setWalletAddress(String walletAddress) { this.walletAddress = walletAddress; }
         
-        public boolean isHasNft() { return hasNft; }
-        public void setHasNft(boolean hasNft) { this.hasNft = hasNft; }
+        public boolean isHasNft() { return nftIds.length > 0; }
+        
+        public int getNftCount() { return nftIds.length; }
         
-        public int getNftCount() { return nftCount; }
-        public void setNftCount(int nftCount) { this.nftCount = nftCount; }
+        /**
+         * Read-only boxed view over the token IDs, for callers that need a List
+         */
+        public List<Integer> getNftIds() {
+            int[] ids = nftIds;
+            return new AbstractList<Integer>() {
+                @Override
+                public Integer get(int index) { return ids[index]; }
+                
+                @Override
+                public int size() { return ids.length; }
+            };
+        }
         
-        public List<Integer> getNftIds() { return nftIds; }
-        public void setNftIds(List<Integer> nftIds) { this.nftIds = nftIds; }
+        /**
+         * Sorted token IDs. The array is shared, do not modify it.
+         */
+        @JsonIgnore
+        public int[] getNftIdArray() { return nftIds; }
         
-        public Integer getPrimaryNftId() { return primaryNftId; }
-        public void setPrimaryNftId(Integer primaryNftId) { this.primaryNftId = primaryNftId; }
+        /**
+         * @param nftIds token IDs in ascending order; the array is kept, not copied
+         */
+        public void setNftIds(int[] nftIds) { this.nftIds = nftIds != null ? nftIds : NO_IDS; }
+        
+        public boolean ownsToken(int nftId) { return Arrays.binarySearch(nftIds, nftId) >= 0; }
+        
+        // For profile display: the lowest token ID they hold
+        public Integer getPrimaryNftId() { return nftIds.length > 0 ? nftIds[0] : null; }
+        
+        /**
+         * True when Subsquid could not be read and this is the last known state (possibly none)
+         */
+        public boolean isStale() { return stale; }
+        
+        /**
+         * Same holdings flagged stale; the shared instance itself is left untouched
+         */
+        NftHolderInfo staleCopy() {
+            NftHolderInfo copy = new NftHolderInfo();
+            copy.walletAddress = walletAddress;
+            copy.nftIds = nftIds;
+            copy.stale = true;
+            return copy;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,541 @@
+package com.yourapp.services;
+
+import com.yourapp.models.TokenSet;
+import com.yourapp.services.NftImageCache.CachedImage;
+import com.yourapp.services.NftImageCache.ImageFetchException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates fixed-size PNG thumbnails of collection images in the background.
+ *
+ * Source images come from a local directory (nft.thumbnails.origin-dir) or, when that
+ * is unset, from the gateway through {@link NftImageCache}. Tokens are queued at one of
+ * three priorities: requested by a client that got the full image instead, owned by a
+ * user who just logged in, or backfill. A bounded worker pool decodes each source once
+ * and writes every configured size to "{size}/{id}.png.{sha-256}" under the cache
+ * directory, so nothing is regenerated after a restart. Beyond max-cache-mb the least
+ * recently served thumbnails are deleted, and generated again if asked for.
+ */
+@Service
+public class NftThumbnailService {
+
+    public static final int PRIORITY_REQUESTED = 0;
+    public static final int PRIORITY_ACTIVE_USER = 1;
+    public static final int PRIORITY_BACKFILL = 2;
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final NftImageCache imageCache;
+    private final NftMetadataService metadataService;
+
+    @Value("${nft.thumbnails.enabled:true}")
+    private boolean enabled;
+
+    @Value("${nft.thumbnails.sizes:64,128,256}")
+    private int[] sizes;
+
+    @Value("${nft.thumbnails.cache-dir:${java.io.tmpdir}/computerchan-nft-thumbnails}")
+    private String cacheDir;
+
+    // Directory holding the collection's source images; empty = fetch through the image cache
+    @Value("${nft.thumbnails.origin-dir:}")
+    private String originDir;
+
+    // 0 = half the CPU cores, so request threads keep the rest
+    @Value("${nft.thumbnails.workers:0}")
+    private int workers;
+
+    // Queue every token at startup (lowest priority), not just those users are seen with
+    @Value("${nft.thumbnails.backfill:false}")
+    private boolean backfill;
+
+    // Sources with more pixels are not decoded
+    @Value("${nft.thumbnails.max-source-pixels:16777216}")
+    private long maxSourcePixels;
+
+    // Tokens whose source was missing or broken are not queued again for this long
+    @Value("${nft.thumbnails.retry-after-ms:600000}")
+    private long retryAfterMs;
+
+    @Value("${nft.thumbnails.max-cache-mb:256}")
+    private long maxCacheMb;
+
+    @Value("${nft.collection.max-token-id:10000}")
+    private int maxTokenId;
+
+    private Path directory;
+    private Path originDirectory;
+    private ThreadPoolExecutor executor;
+
+    // Keyed by size << 32 | token ID
+    private final Map<Long, CachedImage> thumbnails = new ConcurrentHashMap<>();
+    // Best priority each waiting token is queued at
+    private final Map<Integer, Integer> queued = new ConcurrentHashMap<>();
+    // Token ID -> System.nanoTime() after which it may be queued again
+    private final Map<Integer, Long> retryAt = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    // Evicted thumbnails a response still holds, deleted once released
+    private final ConcurrentLinkedQueue<CachedImage> retired = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder[] enqueued = { new LongAdder(), new LongAdder(), new LongAdder() };
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder sourcesDecoded = new LongAdder();
+    private final LongAdder alreadyDone = new LongAdder();
+    private final LongAdder sourceMissing = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder resizeNanos = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder jobsDone = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public NftThumbnailService(NftImageCache imageCache, NftMetadataService metadataService) {
+        this.imageCache = imageCache;
+        this.metadataService = metadataService;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!originDir.isEmpty()) {
+                originDirectory = Paths.get(originDir);
+            } else if (!imageCache.isEnabled()) {
+                System.err.println("Warning: NFT thumbnails disabled, no origin-dir and the image cache is off");
+                return;
+            }
+            directory = Files.createDirectories(Paths.get(cacheDir));
+            for (int size : sizes) {
+                loadDirectory(size, Files.createDirectories(directory.resolve(Integer.toString(size))));
+            }
+            evictIfNeeded();
+        } catch (IOException e) {
+            System.err.println("Warning: NFT thumbnails disabled, cannot use " + cacheDir + ": " + e.getMessage());
+            directory = null;
+            return;
+        }
+
+        int poolSize = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        // Jobs go through execute(), not submit(), so the queue orders them rather than FutureTask wrappers
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(),
+            r -> {
+                Thread t = new Thread(r, "nft-thumbnail-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        System.out.println("NFT thumbnails at " + directory + ": sizes " + Arrays.toString(sizes) + ", "
+            + thumbnails.size() + " files, " + poolSize + " workers, origin "
+            + (originDirectory != null ? originDirectory : "image cache"));
+
+        if (backfill) {
+            for (int id = 0; id <= metadataService.getMaxTokenId(); id++) {
+                enqueue(id, PRIORITY_BACKFILL);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled && directory != null;
+    }
+
+    public boolean isSupportedSize(int size) {
+        for (int s : sizes) {
+            if (s == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The thumbnail if it has been generated. Otherwise the token is queued at the
+     * highest priority and null is returned; callers serve the full image meanwhile.
+     * A token that is already queued, or backing off after a failure, is not queued again.
+     */
+    public CachedImage getThumbnail(int nftId, int size) {
+        if (!isEnabled() || nftId < 0 || nftId > maxTokenId) {
+            return null;
+        }
+        CachedImage thumbnail = thumbnails.get(key(size, nftId));
+        if (thumbnail != null) {
+            if (Files.exists(thumbnail.getPath())) {
+                thumbnail.touch();
+                return thumbnail;
+            }
+            // Deleted from disk behind our back: forget it so it is generated again
+            if (thumbnails.remove(key(size, nftId), thumbnail)) {
+                cachedBytes.addAndGet(-thumbnail.getSize());
+            }
+        }
+        enqueue(nftId, PRIORITY_REQUESTED);
+        return null;
+    }
+
+    /**
+     * Queue a logged-in user's tokens ahead of the backfill
+     */
+    public void prioritize(TokenSet tokens) {
+        if (!isEnabled() || tokens == null) {
+            return;
+        }
+        for (int nftId : tokens.toArray()) {
+            if (!isComplete(nftId)) {
+                enqueue(nftId, PRIORITY_ACTIVE_USER);
+            }
+        }
+    }
+
+    private void enqueue(int nftId, int priority) {
+        if (nftId < 0 || nftId > maxTokenId) {
+            return;
+        }
+        Long retry = retryAt.get(nftId);
+        if (retry != null) {
+            if (System.nanoTime() - retry < 0) {
+                return;
+            }
+            retryAt.remove(nftId, retry);
+        }
+        // Only queue again to move a token up; the lower-priority job it leaves behind finds it done
+        boolean[] improved = new boolean[1];
+        queued.compute(nftId, (id, current) -> {
+            improved[0] = current == null || priority < current;
+            return improved[0] ? priority : current;
+        });
+        if (improved[0]) {
+            try {
+                executor.execute(new Job(nftId, priority, sequence.incrementAndGet()));
+                enqueued[priority].increment();
+            } catch (RejectedExecutionException e) {
+                // Shutting down: a login finishing now just gets no thumbnails queued
+                queued.remove(nftId, priority);
+            }
+        }
+    }
+
+    private boolean isComplete(int nftId) {
+        for (int size : sizes) {
+            if (!thumbnails.containsKey(key(size, nftId))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generate(Job job) {
+        queueNanos.add(System.nanoTime() - job.queuedAt);
+        try {
+            if (isComplete(job.nftId)) {
+                alreadyDone.increment();
+                return;
+            }
+
+            long start = System.nanoTime();
+            BufferedImage source = readSource(job.nftId);
+            long decoded = System.nanoTime();
+            fetchNanos.add(decoded - start);
+            if (source == null) {
+                sourceMissing.increment();
+                backOff(job.nftId);
+                return;
+            }
+            sourcesDecoded.increment();
+
+            for (int size : sizes) {
+                if (!thumbnails.containsKey(key(size, job.nftId))) {
+                    store(job.nftId, size, resize(source, size));
+                    generated.increment();
+                }
+            }
+            resizeNanos.add(System.nanoTime() - decoded);
+        } catch (IOException | ImageFetchException e) {
+            failures.increment();
+            backOff(job.nftId);
+            System.err.println("Error generating thumbnails for NFT " + job.nftId + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            failures.increment();
+            backOff(job.nftId);
+            System.err.println("Error generating thumbnails for NFT " + job.nftId + ": " + e);
+        } finally {
+            queued.remove(job.nftId, job.priority);
+            jobsDone.increment();
+        }
+    }
+
+    private void backOff(int nftId) {
+        retryAt.put(nftId, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMs));
+    }
+
+    /**
+     * Decode a token's source image, or null if the origin doesn't have it
+     */
+    private BufferedImage readSource(int nftId) throws IOException {
+        Path file;
+        if (originDirectory != null) {
+            file = originDirectory.resolve(metadataService.getImageFilename(nftId));
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+        } else {
+            CachedImage image = imageCache.getImage(nftId);
+            if (image == null) {
+                return null;
+            }
+            file = image.getPath();
+        }
+
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException(file.getFileName() + " is not a supported image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Check the header before allocating the raster
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxSourcePixels) {
+                    throw new IOException(file.getFileName() + " has " + pixels + " pixels, limit is " + maxSourcePixels);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale to fit a size x size box, halving step by step so bilinear filtering
+     * doesn't skip source pixels. Images already that small are kept as they are.
+     */
+    static BufferedImage resize(BufferedImage source, int size) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) size / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        do {
+            int w = Math.max(targetWidth, current.getWidth() / 2);
+            int h = Math.max(targetHeight, current.getHeight() / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (current.getWidth() != targetWidth || current.getHeight() != targetHeight);
+        return current;
+    }
+
+    private void store(int nftId, int size, BufferedImage thumbnail) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        if (!ImageIO.write(thumbnail, "png", png)) {
+            throw new IOException("No PNG writer available");
+        }
+        byte[] bytes = png.toByteArray();
+        String hash;
+        try {
+            hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        String filename = nftId + ".png";
+        Path sizeDir = directory.resolve(Integer.toString(size));
+        Path part = Files.createTempFile(sizeDir, filename, PART_SUFFIX);
+        try {
+            Files.write(part, bytes);
+            Path target = sizeDir.resolve(filename + "." + hash);
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            CachedImage previous = thumbnails.put(key(size, nftId), new CachedImage(filename, target, bytes.length, hash));
+            cachedBytes.addAndGet(bytes.length - (previous != null ? previous.getSize() : 0));
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Delete least recently served thumbnails until the cache is back under 90% of its limit
+     */
+    private synchronized void evictIfNeeded() {
+        long limit = maxCacheMb * 1024 * 1024;
+        if (cachedBytes.get() <= limit) {
+            return;
+        }
+        List<Map.Entry<Long, CachedImage>> byAge = new ArrayList<>(thumbnails.entrySet());
+        byAge.sort(Comparator.comparingLong(entry -> entry.getValue().getLastAccess()));
+        long target = limit / 10 * 9;
+        for (Map.Entry<Long, CachedImage> entry : byAge) {
+            if (cachedBytes.get() <= target) {
+                break;
+            }
+            CachedImage thumbnail = entry.getValue();
+            if (thumbnails.remove(entry.getKey(), thumbnail)) {
+                cachedBytes.addAndGet(-thumbnail.getSize());
+                evictions.increment();
+                if (!thumbnail.retire()) {
+                    retired.add(thumbnail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete evicted thumbnails whose last response has finished with them
+     */
+    @Scheduled(fixedDelayString = "${nft.images.retired-sweep-ms:10000}")
+    public void sweepRetired() {
+        retired.removeIf(CachedImage::deleteIfUnpinned);
+    }
+
+    private void loadDirectory(int size, Path sizeDir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sizeDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                // {id}.png.{sha-256}
+                int dot = name.indexOf('.');
+                int hashDot = name.lastIndexOf('.');
+                if (dot <= 0 || name.length() - hashDot - 1 != 64) {
+                    continue;
+                }
+                int nftId;
+                try {
+                    nftId = Integer.parseInt(name.substring(0, dot));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                CachedImage image = new CachedImage(name.substring(0, hashDot), file, Files.size(file), name.substring(hashDot + 1));
+                CachedImage previous = thumbnails.put(key(size, nftId), image);
+                if (previous != null) {
+                    Files.deleteIfExists(previous.getPath());
+                }
+                cachedBytes.addAndGet(image.getSize() - (previous != null ? previous.getSize() : 0));
+            }
+        }
+    }
+
+    private static long key(int size, int nftId) {
+        return ((long) size << 32) | nftId;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("sizes", sizes);
+        stats.put("files", thumbnails.size());
+        stats.put("bytes", cachedBytes.get());
+        stats.put("maxBytes", maxCacheMb * 1024 * 1024);
+        stats.put("evictions", evictions.sum());
+        stats.put("retired", retired.size());
+        if (executor != null) {
+            stats.put("workers", executor.getMaximumPoolSize());
+            stats.put("active", executor.getActiveCount());
+            stats.put("queued", executor.getQueue().size());
+        }
+        stats.put("enqueuedRequested", enqueued[PRIORITY_REQUESTED].sum());
+        stats.put("enqueuedActiveUser", enqueued[PRIORITY_ACTIVE_USER].sum());
+        stats.put("enqueuedBackfill", enqueued[PRIORITY_BACKFILL].sum());
+        long jobs = jobsDone.sum();
+        long decodedCount = sourcesDecoded.sum();
+        stats.put("jobsDone", jobs);
+        stats.put("thumbnailsGenerated", generated.sum());
+        stats.put("sourcesDecoded", decodedCount);
+        stats.put("alreadyDone", alreadyDone.sum());
+        stats.put("sourceMissing", sourceMissing.sum());
+        stats.put("failures", failures.sum());
+        stats.put("backingOff", retryAt.size());
+        stats.put("avgQueueMs", jobs > 0 ? queueNanos.sum() / jobs / 1_000_000.0 : 0.0);
+        stats.put("avgSourceMs", decodedCount > 0 ? fetchNanos.sum() / decodedCount / 1_000_000.0 : 0.0);
+        stats.put("avgResizeMs", decodedCount > 0 ? resizeNanos.sum() / decodedCount / 1_000_000.0 : 0.0);
+        return stats;
+    }
+
+    /**
+     * One token waiting for thumbnails. Lower priority values run first, then oldest first.
+     */
+    private class Job implements Runnable, Comparable<Job> {
+        private final int nftId;
+        private final int priority;
+        private final long sequence;
+        private final long queuedAt = System.nanoTime();
+
+        Job(int nftId, int priority, long sequence) {
+            this.nftId = nftId;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            generate(this);
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
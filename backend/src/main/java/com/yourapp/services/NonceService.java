@@ -1,42 +1,248 @@
 package com.yourapp.services;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
+import jakarta.annotation.PostConstruct;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Iterator;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * One-time login nonces per address.
+ *
+ * The store is capacity-bounded: entries are removed when consumed, swept by a
+ * hashed timer wheel once they expire, and the soonest-expiring entries are
+ * evicted first when the store is full. An entry leaves its wheel slot whenever it
+ * leaves the store (consumed, replaced by a newer nonce, expired or evicted), so the
+ * wheel never holds more than the store.
+ */
 @Service
 public class NonceService {
-    private final Map<String, NonceData> nonceStore = new ConcurrentHashMap<>();
+    private static final long TTL_MILLIS = 300_000; // Expire after 5 minutes
+
+    @Value("${nonce.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${nonce.wheel.tick-millis:1000}")
+    private long tickMillis;
+
+    private final Map<String, NonceEntry> nonceStore = new ConcurrentHashMap<>();
     private final Random random = new Random();
 
+    // Slot i holds entries expiring during ticks congruent to i; one lap covers the TTL
+    private Set<NonceEntry>[] wheel;
+    private long currentTick;
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        int slots = (int) (TTL_MILLIS / tickMillis) + 2;
+        wheel = new Set[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+        currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
     public String generateNonce(String address) {
-        String nonce = String.valueOf(100000 + random.nextInt(900000)); // 6-digit code
-        nonceStore.put(address.toLowerCase(), new NonceData(nonce, Instant.now(), false));
-        return nonce;
+        int nonce = 100000 + random.nextInt(900000); // 6-digit code
+        long expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+        NonceEntry entry = new NonceEntry(address.toLowerCase(), nonce, expiresAt, slotIndex(expiresAt));
+
+        if (nonceStore.size() >= maxEntries) {
+            evictSoonestExpiring();
+        }
+        // Into the wheel before the store, so whoever replaces it can always unlink it
+        wheel[entry.slot].add(entry);
+        NonceEntry previous = nonceStore.put(entry.key, entry);
+        if (previous != null) {
+            unlink(previous);
+        }
+        return String.valueOf(nonce);
     }
 
+    /**
+     * Check a nonce and consume it. Only one caller can succeed for a given nonce.
+     */
     public boolean validateNonce(String address, String nonce) {
-        NonceData data = nonceStore.get(address.toLowerCase());
-        if (data == null || data.used) return false;
-        // Optional: Expire after 5 minutes
-        if (Instant.now().isAfter(data.createdAt.plusSeconds(300))) return false;
-        boolean valid = data.nonce.equals(nonce);
-        if (valid) data.used = true; // mark as used
-        return valid;
+        return consumeNonce(address, nonce) != 0;
     }
 
-    private static class NonceData {
-        String nonce;
-        Instant createdAt;
-        boolean used;
+    /**
+     * Whether the nonce is currently valid for the address, without consuming it
+     */
+    public boolean checkNonce(String address, String nonce) {
+        if (address == null || nonce == null) return false;
+        NonceEntry entry = nonceStore.get(address.toLowerCase());
+        return entry != null && System.currentTimeMillis() < entry.expiresAt && entry.matches(nonce);
+    }
+
+    /**
+     * Consume a nonce. Only one caller can succeed for a given nonce.
+     *
+     * @return when the nonce would have expired (for {@link #restoreNonce}), or 0 if it was not valid
+     */
+    public long consumeNonce(String address, String nonce) {
+        if (address == null || nonce == null) return 0;
+        NonceEntry entry = nonceStore.get(address.toLowerCase());
+        if (entry == null) return 0;
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            if (nonceStore.remove(entry.key, entry)) unlink(entry);
+            return 0;
+        }
+        if (!entry.matches(nonce)) return 0;
+        // Atomic consume-once: a concurrent validate of the same nonce loses this race
+        if (!nonceStore.remove(entry.key, entry)) return 0;
+        unlink(entry);
+        consumed.incrementAndGet();
+        return entry.expiresAt;
+    }
+
+    /**
+     * Put back a nonce consumed by a login that then failed with a retryable error (503),
+     * so the client can retry the same signed message. No-op once the nonce has expired
+     * or the address has been issued a newer one.
+     */
+    public void restoreNonce(String address, String nonce, long expiresAt) {
+        if (address == null || nonce == null || System.currentTimeMillis() >= expiresAt) return;
+        int value = parseNonce(nonce);
+        if (value < 0) return;
+        NonceEntry entry = new NonceEntry(address.toLowerCase(), value, expiresAt, slotIndex(expiresAt));
+
+        if (nonceStore.size() >= maxEntries) {
+            evictSoonestExpiring();
+        }
+        wheel[entry.slot].add(entry);
+        if (nonceStore.putIfAbsent(entry.key, entry) == null) {
+            restored.incrementAndGet();
+        } else {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Advance the timer wheel and drop every entry whose slot has come due
+     */
+    @Scheduled(fixedRateString = "${nonce.wheel.tick-millis:1000}")
+    public synchronized void advanceWheel() {
+        long nowTick = System.currentTimeMillis() / tickMillis;
+        // After a long pause one full lap is enough to see every slot
+        long from = Math.max(currentTick, nowTick - wheel.length + 1);
+        for (long tick = from; tick <= nowTick; tick++) {
+            Set<NonceEntry> slot = wheel[(int) (tick % wheel.length)];
+            long now = System.currentTimeMillis();
+            for (Iterator<NonceEntry> it = slot.iterator(); it.hasNext(); ) {
+                NonceEntry entry = it.next();
+                if (entry.expiresAt <= now) {
+                    it.remove();
+                    if (nonceStore.remove(entry.key, entry)) expirations.incrementAndGet();
+                }
+            }
+        }
+        currentTick = nowTick;
+    }
 
-        NonceData(String nonce, Instant createdAt, boolean used) {
+    /**
+     * Make room by evicting from the slots that expire next
+     */
+    private synchronized void evictSoonestExpiring() {
+        long tick = currentTick;
+        for (int i = 0; i < wheel.length && nonceStore.size() >= maxEntries; i++) {
+            Set<NonceEntry> slot = wheel[(int) ((tick + i) % wheel.length)];
+            for (Iterator<NonceEntry> it = slot.iterator(); nonceStore.size() >= maxEntries && it.hasNext(); ) {
+                NonceEntry entry = it.next();
+                // Entries still on their way into the store are left alone
+                if (nonceStore.remove(entry.key, entry)) {
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private int slotIndex(long expiresAt) {
+        return (int) ((expiresAt / tickMillis) % wheel.length);
+    }
+
+    private void unlink(NonceEntry entry) {
+        wheel[entry.slot].remove(entry);
+    }
+
+    /**
+     * Entries currently scheduled on the wheel
+     */
+    int getWheelSize() {
+        int size = 0;
+        for (Set<NonceEntry> slot : wheel) {
+            size += slot.size();
+        }
+        return size;
+    }
+
+    /**
+     * Live entries and lifetime counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("live", nonceStore.size());
+        stats.put("scheduled", getWheelSize());
+        stats.put("capacity", maxEntries);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("consumed", consumed.get());
+        stats.put("restored", restored.get());
+        return stats;
+    }
+
+    public int getLiveCount() {
+        return nonceStore.size();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Parse a 6-digit nonce without allocating, or -1 if it isn't one
+     */
+    private static int parseNonce(String candidate) {
+        if (candidate.length() != 6) return -1;
+        int value = 0;
+        for (int i = 0; i < 6; i++) {
+            char c = candidate.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static final class NonceEntry {
+        final String key;
+        final int nonce;
+        final long expiresAt;
+        // Wheel slot the entry was scheduled in, so it can be unlinked without a search
+        final int slot;
+
+        NonceEntry(String key, int nonce, long expiresAt, int slot) {
+            this.key = key;
             this.nonce = nonce;
-            this.createdAt = createdAt;
-            this.used = used;
+            this.expiresAt = expiresAt;
+            this.slot = slot;
+        }
+
+        boolean matches(String candidate) {
+            return parseNonce(candidate) == nonce;
         }
     }
-} 
\ No newline at end of file
+}
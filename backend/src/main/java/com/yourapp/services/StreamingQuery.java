@@ -0,0 +1,37 @@
+package com.yourapp.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Full-table reads that stream rows through a cursor instead of loading the result set
+ */
+final class StreamingQuery {
+
+    private StreamingQuery() {
+    }
+
+    static void streamQuery(DataSource dataSource, String sql, int fetchSize, RowCallbackHandler handler, Object... args) {
+        streamQuery(dataSource, sql, fetchSize, -1, handler, args);
+    }
+
+    /**
+     * Run sql and hand each row to handler, fetching fetchSize rows per round trip.
+     * A queryTimeoutSeconds of -1 leaves the driver default.
+     */
+    static void streamQuery(DataSource dataSource, String sql, int fetchSize, int queryTimeoutSeconds,
+                            RowCallbackHandler handler, Object... args) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        template.setQueryTimeout(queryTimeoutSeconds);
+
+        // pgjdbc only uses a cursor (and honours the fetch size) inside a transaction
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        tx.setReadOnly(true);
+        tx.executeWithoutResult(status -> template.query(sql, handler, args));
+    }
+}
@@ -0,0 +1,226 @@
+package com.yourapp.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.models.TokenSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * NDJSON dump of the users table for analytics.
+ *
+ * Rows are read through a pgjdbc cursor (fetch size rows at a time, inside a read-only
+ * transaction) and written one JSON line each to a spool file under spool-dir, so memory
+ * use does not grow with the table. The users pool has two connections, so the one the
+ * export borrows is only held while the table is read at disk speed; the file is then
+ * streamed to the caller, however slowly it reads, with no connection held. Only one
+ * export runs at a time.
+ */
+@Service
+public class UserExportService {
+
+    private static final String EXPORT_SQL =
+        "SELECT address, nft_count, holder_tier, nft_token_set, nft_tokens, last_login FROM users";
+    private static final String SINCE_CLAUSE = " WHERE last_login >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseBulkheads bulkheads;
+    private final LastLoginWriteBehind lastLoginWriteBehind;
+    private final ObjectMapper objectMapper;
+
+    // Shared secret for /api/user/export; empty disables the endpoint
+    @Value("${users.export.token:}")
+    private String token;
+
+    @Value("${users.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${users.export.spool-dir:${java.io.tmpdir}}")
+    private String spoolDir;
+
+    private final Semaphore running = new Semaphore(1);
+
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rowsExported = new LongAdder();
+    private final AtomicLong lastRows = new AtomicLong();
+    private volatile long lastMillis;
+    private volatile long lastQueryMillis;
+    private volatile String lastError;
+
+    public UserExportService(JdbcTemplate jdbcTemplate, DatabaseBulkheads bulkheads,
+                             LastLoginWriteBehind lastLoginWriteBehind, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bulkheads = bulkheads;
+        this.lastLoginWriteBehind = lastLoginWriteBehind;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return !token.isEmpty();
+    }
+
+    /**
+     * Constant-time comparison against the configured token
+     */
+    public boolean isAuthorized(String presented) {
+        return isEnabled() && presented != null && MessageDigest.isEqual(
+            token.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Claim the single export slot. Returns false while another export is running;
+     * otherwise the caller must follow with {@link #export} (which releases it) or {@link #release}.
+     */
+    public boolean tryStart() {
+        if (running.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void release() {
+        running.release();
+    }
+
+    /**
+     * Write one JSON object per user, newline-separated, to out. With since set, only users
+     * whose last login is at or after it are exported. Releases the slot from {@link #tryStart}.
+     *
+     * @return rows written
+     */
+    public long export(LocalDateTime since, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long[] rows = new long[1];
+        Path spool = null;
+        try {
+            if (since != null) {
+                // Buffered last_login bumps would otherwise be missed by the since filter
+                lastLoginWriteBehind.flush();
+            }
+            spool = Files.createTempFile(Files.createDirectories(Paths.get(spoolDir)), "users-export-", ".ndjson");
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(spool), 64 * 1024);
+                 JsonGenerator json = objectMapper.getFactory().createGenerator(file)) {
+                json.setRootValueSeparator(null);
+                bulkheads.users().run(() -> {
+                    if (since != null) {
+                        StreamingQuery.streamQuery(jdbcTemplate.getDataSource(), EXPORT_SQL + SINCE_CLAUSE, fetchSize,
+                            (ResultSet rs) -> writeRow(rs, json, rows), Timestamp.valueOf(since));
+                    } else {
+                        StreamingQuery.streamQuery(jdbcTemplate.getDataSource(), EXPORT_SQL, fetchSize,
+                            (ResultSet rs) -> writeRow(rs, json, rows));
+                    }
+                });
+            }
+            lastQueryMillis = System.currentTimeMillis() - start;
+
+            // The connection is back in the pool; the client reads at its own pace from here
+            Files.copy(spool, out);
+            out.flush();
+
+            exports.increment();
+            lastError = null;
+            return rows[0];
+        } catch (UncheckedIOException e) {
+            // Writing the spool file failed (disk full?)
+            exportFailed(rows[0], e);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            // Usually the client going away while the spool file is copied
+            exportFailed(rows[0], e);
+            throw e;
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException e) {
+                    System.err.println("Error deleting export spool " + spool + ": " + e.getMessage());
+                }
+            }
+            running.release();
+            rowsExported.add(rows[0]);
+            lastRows.set(rows[0]);
+            lastMillis = System.currentTimeMillis() - start;
+            System.out.println("User export" + (since != null ? " since " + since : "") + ": "
+                + rows[0] + " rows in " + lastMillis + "ms");
+        }
+    }
+
+    private void exportFailed(long rows, Exception e) {
+        failures.increment();
+        lastError = e.getMessage();
+        System.err.println("User export stopped after " + rows + " rows: " + e.getMessage());
+    }
+
+    private void writeRow(ResultSet rs, JsonGenerator json, long[] rows) throws SQLException {
+        try {
+            json.writeStartObject();
+            json.writeStringField("address", rs.getString(1));
+            int nftCount = rs.getInt(2);
+            if (rs.wasNull()) {
+                json.writeNullField("nftCount");
+            } else {
+                json.writeNumberField("nftCount", nftCount);
+            }
+            json.writeStringField("holderTier", rs.getString(3));
+
+            // Rows from before nft_token_set only have the CSV column (see User#migrateLegacyNftTokens)
+            byte[] encoded = rs.getBytes(4);
+            TokenSet tokens = encoded != null ? TokenSet.decode(encoded) : TokenSet.parseCsv(rs.getString(5));
+            int[] ids = tokens.toArray();
+            json.writeFieldName("nftTokens");
+            json.writeArray(ids, 0, ids.length);
+
+            Timestamp lastLogin = rs.getTimestamp(6);
+            if (lastLogin == null) {
+                json.writeNullField("lastLogin");
+            } else {
+                json.writeStringField("lastLogin", DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(lastLogin.toLocalDateTime()));
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+            rows[0]++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("running", running.availablePermits() == 0);
+        stats.put("exports", exports.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("failures", failures.sum());
+        stats.put("rowsExported", rowsExported.sum());
+        stats.put("lastRows", lastRows.get());
+        stats.put("lastMillis", lastMillis);
+        stats.put("lastQueryMillis", lastQueryMillis);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
@@ -1,49 +1,142 @@
 package com.yourapp.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.yourapp.config.Bulkhead;
+import com.yourapp.config.Bulkhead.BulkheadFullException;
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.metrics.StageMetrics;
+import com.yourapp.models.TokenSet;
 import com.yourapp.models.User;
 import com.yourapp.repositories.UserRepository;
+import com.yourapp.repositories.UserRepositoryCustom.UpsertResult;
 import com.yourapp.services.NftService.NftHolderInfo;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.stream.Collectors;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
     private final NftService nftService;
+    private final StageMetrics stageMetrics;
+    private final DatabaseBulkheads bulkheads;
+    private final LastLoginWriteBehind lastLoginWriteBehind;
+    private final HolderLeaderboard holderLeaderboard;
+
+    // Single-statement INSERT ... ON CONFLICT login writes (PostgreSQL); otherwise find + save
+    @Value("${users.upsert.enabled:true}")
+    private boolean upsertEnabled;
+
+    // Profile snapshots for the polled profile endpoints; every write below invalidates its entry,
+    // the TTL only bounds staleness from writes made outside this service
+    @Value("${users.profile-cache.max-size:10000}")
+    private long profileCacheMaxSize;
+
+    @Value("${users.profile-cache.ttl-seconds:60}")
+    private long profileCacheTtlSeconds;
 
-    public UserService(UserRepository userRepository, NftService nftService) {
+    // Keyed by normalized address
+    private Cache<String, ProfileSnapshot> profileCache;
+
+    public UserService(UserRepository userRepository, NftService nftService, StageMetrics stageMetrics,
+                       DatabaseBulkheads bulkheads, LastLoginWriteBehind lastLoginWriteBehind,
+                       HolderLeaderboard holderLeaderboard) {
         this.userRepository = userRepository;
         this.nftService = nftService;
+        this.stageMetrics = stageMetrics;
+        this.bulkheads = bulkheads;
+        this.lastLoginWriteBehind = lastLoginWriteBehind;
+        this.holderLeaderboard = holderLeaderboard;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.profileCache = Caffeine.newBuilder()
+            .maximumSize(profileCacheMaxSize)
+            .expireAfterWrite(Duration.ofSeconds(profileCacheTtlSeconds))
+            .recordStats()
+            .build();
     }
 
     public User createOrUpdateUser(String address) {
+        return createOrUpdateUser(address, false, null);
+    }
+
+    /**
+     * Create or update a user from their NFT holdings.
+     * With refreshNfts set, ownership is re-read from Subsquid instead of the ownership cache.
+     */
+    public User createOrUpdateUser(String address, boolean refreshNfts) {
+        return createOrUpdateUser(address, refreshNfts, null);
+    }
+
+    /**
+     * Create or update a user from NFT holdings the caller already looked up
+     * (see NftService#prefetchNftHolderInfo). A null nftInfo falls back to a lookup here.
+     */
+    public User createOrUpdateUser(String address, NftHolderInfo nftInfo) {
+        return createOrUpdateUser(address, false, nftInfo);
+    }
+
+    private User createOrUpdateUser(String address, boolean refreshNfts, NftHolderInfo prefetched) {
         try {
+            // While the ownership change feed is current, stored NFT state is kept up to date
+            // by the sync worker, so returning users don't need a Subsquid query. Only holdings
+            // actually read since the feed became trusted count: a login during a Subsquid
+            // outage moves last_login but not nft_synced_at.
+            LocalDateTime feedSince = refreshNfts || prefetched != null ? null : nftService.getChangeFeedTrustedSince();
+            if (feedSince != null) {
+                User trusted = stageMetrics.time(StageMetrics.USER_DB, () -> usersDb().call(() -> {
+                    User existing = withPendingLastLogin(userRepository.findByAddress(address).orElse(null));
+                    if (existing != null && isSyncedSince(existing, feedSince)) {
+                        return touchLastLogin(existing);
+                    }
+                    return null;
+                }));
+                if (trusted != null) {
+                    return trusted;
+                }
+            }
+            
             // Get detailed NFT information from Subsquid database
-            NftHolderInfo nftInfo = nftService.getNftHolderInfo(address);
+            NftHolderInfo nftInfo = prefetched != null ? prefetched
+                : stageMetrics.time(StageMetrics.OWNERSHIP, () -> refreshNfts
+                    ? nftService.refreshNftHolderInfo(address)
+                    : nftService.getNftHolderInfo(address));
             
-            // Convert NFT IDs list to string for storage
-            String nftTokensString = nftInfo.getNftIds().stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(","));
+            if (nftInfo.isStale()) {
+                return ranked(stageMetrics.time(StageMetrics.USER_DB, () -> usersDb().call(() -> keepStoredNfts(address, nftInfo))));
+            }
+            
+            if (upsertEnabled && userRepository.isUpsertSupported()) {
+                return ranked(stageMetrics.time(StageMetrics.USER_DB, () -> usersDb().call(() -> upsertUser(address, nftInfo))));
+            }
             
-            return userRepository.findByAddress(address)
+            return ranked(stageMetrics.time(StageMetrics.USER_DB, () -> usersDb().call(() -> userRepository.findByAddress(address)
             .map(user -> {
+                // Unchanged holdings: only last_login moves, and that is written behind. The
+                // sync marker is saved when the feed's trust boundary has passed it.
+                if (TokenSet.of(nftInfo.getNftIdArray()).equals(user.getNftTokenSet())
+                        && !needsResync(user, nftService.getChangeFeedTrustedSince())) {
+                    return touchLastLogin(user);
+                }
                 // Update existing user
                 user.setLastLogin(LocalDateTime.now());
-                user.setHasNft(nftInfo.isHasNft());
-                user.setNftCount(nftInfo.getNftCount());
-                user.setNftTokens(nftTokensString);
-                user.setPrimaryNftId(nftInfo.getPrimaryNftId());
-                
-                // Calculate tier based on NFT count
-                user.calculateHolderTier();
-                
-                // Set profile customization based on NFT ownership
-                if (nftInfo.isHasNft()) {
-                    setProfileCustomization(user, nftInfo);
-                }
-                
+                applyNftInfo(user, nftInfo);
                 return userRepository.save(user);
             })
             .orElseGet(() -> {
@@ -51,21 +144,12 @@ public class UserService {
                 User newUser = new User();
                 newUser.setAddress(address);
                 newUser.setLastLogin(LocalDateTime.now());
-                newUser.setHasNft(nftInfo.isHasNft());
-                newUser.setNftCount(nftInfo.getNftCount());
-                newUser.setNftTokens(nftTokensString);
-                newUser.setPrimaryNftId(nftInfo.getPrimaryNftId());
-                
-                // Calculate tier
-                newUser.calculateHolderTier();
-                
-                // Set profile customization
-                if (nftInfo.isHasNft()) {
-                    setProfileCustomization(newUser, nftInfo);
-                }
-                
+                applyNftInfo(newUser, nftInfo);
                 return userRepository.save(newUser);
-            });
+            }))));
+        } catch (BulkheadFullException e) {
+            // Shed load rather than hand out a fallback user that looks like a non-holder
+            throw e;
         } catch (Exception e) {
             // Log the error for debugging
             System.err.println("Error in createOrUpdateUser for address " + address + ": " + e.getMessage());
@@ -77,22 +161,213 @@ public class UserService {
             fallbackUser.setLastLogin(LocalDateTime.now());
             fallbackUser.setHasNft(false);
             fallbackUser.setNftCount(0);
-            fallbackUser.setNftTokens("");
+            fallbackUser.setNftTokenSet(TokenSet.EMPTY);
             fallbackUser.setPrimaryNftId(null);
             fallbackUser.calculateHolderTier();
             
             return fallbackUser;
+        } finally {
+            invalidateProfile(address);
+        }
+    }
+    
+    /**
+     * One round trip: insert the user, or update it only if its holdings changed.
+     * An untouched row just gets its last_login bump written behind.
+     */
+    private User upsertUser(String address, NftHolderInfo nftInfo) {
+        User candidate = new User();
+        candidate.setAddress(address);
+        candidate.setLastLogin(LocalDateTime.now());
+        applyNftInfo(candidate, nftInfo);
+        
+        UpsertResult result = userRepository.upsertFromLogin(candidate, nftService.getChangeFeedTrustedSince());
+        return result.isWritten() ? result.getUser() : touchLastLogin(result.getUser());
+    }
+    
+    /**
+     * Login while Subsquid could not be read: an existing user keeps the holdings stored in
+     * their row and only last_login moves. A new user is created from the stale info, and
+     * corrected by the next login that gets a real answer.
+     */
+    private User keepStoredNfts(String address, NftHolderInfo nftInfo) {
+        User user = withPendingLastLogin(userRepository.findByAddress(address).orElse(null));
+        if (user != null) {
+            user = touchLastLogin(user);
+        } else {
+            user = new User();
+            user.setAddress(address);
+            user.setLastLogin(LocalDateTime.now());
+            applyNftInfo(user, nftInfo);
+            user = userRepository.save(user);
+        }
+        user.setNftDataStale(true);
+        return user;
+    }
+    
+    /**
+     * Keep the holder leaderboard in step with a user whose holdings were just written
+     */
+    private User ranked(User user) {
+        holderLeaderboard.update(user.getAddress(), user.getNftCount());
+        return user;
+    }
+    
+    /**
+     * Bump last_login on an existing row through the write-behind buffer, saving
+     * synchronously only when the buffer is full or the row still needs its legacy migration
+     */
+    private User touchLastLogin(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        user.setLastLogin(now);
+        if (user.isLegacyMigrationPending() || !lastLoginWriteBehind.record(user.getAddress(), now)) {
+            return userRepository.save(user);
         }
+        return user;
+    }
+    
+    /**
+     * Reflect a login that is still waiting in the write-behind buffer
+     */
+    private User withPendingLastLogin(User user) {
+        if (user != null) {
+            LocalDateTime pending = lastLoginWriteBehind.getPending(user.getAddress());
+            if (pending != null && (user.getLastLogin() == null || pending.isAfter(user.getLastLogin()))) {
+                user.setLastLogin(pending);
+            }
+        }
+        return user;
+    }
+    
+    private static boolean isSyncedSince(User user, LocalDateTime since) {
+        return user.getNftSyncedAt() != null && user.getNftSyncedAt().isAfter(since);
+    }
+    
+    private static boolean needsResync(User user, LocalDateTime trustedSince) {
+        return user.getNftSyncedAt() == null || trustedSince != null && !isSyncedSince(user, trustedSince);
+    }
+    
+    /**
+     * Copy NFT ownership onto a user and recompute tier and profile customization.
+     * Real (not stale) holdings also mark the user as synced.
+     */
+    private void applyNftInfo(User user, NftHolderInfo nftInfo) {
+        if (!nftInfo.isStale()) {
+            user.setNftSyncedAt(LocalDateTime.now());
+        }
+        user.setHasNft(nftInfo.isHasNft());
+        user.setNftCount(nftInfo.getNftCount());
+        user.setNftTokenSet(TokenSet.of(nftInfo.getNftIdArray()));
+        user.setPrimaryNftId(nftInfo.getPrimaryNftId());
+        
+        // Calculate tier based on NFT count
+        user.calculateHolderTier();
+        
+        // Set profile customization based on NFT ownership
+        if (nftInfo.isHasNft()) {
+            setProfileCustomization(user, nftInfo);
+        }
+    }
+    
+    /**
+     * Apply ownership changes from the sync worker to any matching users.
+     * Wallets that have never logged in are ignored.
+     *
+     * @return number of users updated
+     */
+    @Transactional
+    public int applyOwnershipChanges(Collection<NftHolderInfo> changes) {
+        Map<String, NftHolderInfo> byAddress = new HashMap<>();
+        for (NftHolderInfo info : changes) {
+            byAddress.put(info.getWalletAddress(), info);
+        }
+        if (byAddress.isEmpty()) {
+            return 0;
+        }
+        
+        List<User> users = userRepository.findByAddressInIgnoreCase(byAddress.keySet());
+        for (User user : users) {
+            applyNftInfo(user, byAddress.get(NftService.normalizeAddress(user.getAddress())));
+        }
+        userRepository.saveAll(users);
+        afterCommit(users);
+        return users.size();
     }
     
     public User getUserByAddress(String address) {
-        return userRepository.findByAddress(address).orElse(null);
+        return stageMetrics.time(StageMetrics.USER_DB,
+            () -> usersDb().call(() -> withPendingLastLogin(userRepository.findByAddress(address).orElse(null))));
+    }
+    
+    /**
+     * Profile fields of a user, from the profile cache when possible, or null if there is no such user.
+     * Lookups stay exact-case like findByAddress: a cached entry stored under another casing is bypassed.
+     */
+    public ProfileSnapshot getProfile(String address) {
+        if (address == null) {
+            return null;
+        }
+        String key = NftService.normalizeAddress(address);
+        ProfileSnapshot cached = profileCache.getIfPresent(key);
+        if (cached != null && !cached.getAddress().equals(address)) {
+            return loadProfile(address);
+        }
+        // Loaded atomically per key: an invalidation waits for an in-flight load instead of
+        // being overtaken by it. Missing users are not cached.
+        return cached != null ? cached : profileCache.get(key, k -> loadProfile(address));
+    }
+
+    private ProfileSnapshot loadProfile(String address) {
+        User user = getUserByAddress(address);
+        return user != null ? new ProfileSnapshot(user) : null;
+    }
+    
+    private void invalidateProfile(String address) {
+        if (profileCache != null && address != null) {
+            profileCache.invalidate(NftService.normalizeAddress(address));
+        }
+    }
+    
+    /**
+     * Invalidate profiles and update the leaderboard once the surrounding transaction has
+     * committed, so a concurrent profile read cannot cache the pre-commit row after the invalidation
+     */
+    private void afterCommit(List<User> users) {
+        Runnable publish = () -> users.forEach(user -> {
+            invalidateProfile(user.getAddress());
+            ranked(user);
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish.run();
+            }
+        });
+    }
+    
+    public Map<String, Object> getProfileCacheStats() {
+        CacheStats stats = profileCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", profileCache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+    
+    private Bulkhead usersDb() {
+        return bulkheads.users();
     }
     
     /**
      * Set profile customization based on NFT ownership
      */
-    private void setProfileCustomization(User user, NftHolderInfo nftInfo) {
+    void setProfileCustomization(User user, NftHolderInfo nftInfo) {
         // Set profile background based on tier
         switch (user.getHolderTier()) {
             case "WHALE":
@@ -142,25 +417,67 @@ public class UserService {
      * Update a user's primary NFT (for profile display)
      */
     public User updatePrimaryNft(String address, Integer nftId) {
-        return userRepository.findByAddress(address)
+        return usersDb().call(() -> userRepository.findByAddress(address)
             .map(user -> {
                 // Verify they own this NFT
-                String[] ownedNfts = user.getNftTokens().split(",");
-                boolean ownsNft = false;
-                for (String nft : ownedNfts) {
-                    if (nft.trim().equals(String.valueOf(nftId))) {
-                        ownsNft = true;
-                        break;
-                    }
-                }
-                
-                if (ownsNft) {
+                if (nftId != null && user.getNftTokenSet().contains(nftId)) {
                     user.setPrimaryNftId(nftId);
-                    return userRepository.save(user);
+                    User saved = userRepository.save(user);
+                    invalidateProfile(address);
+                    return saved;
                 }
                 
                 return user;
             })
-            .orElse(null);
+            .orElse(null));
+    }
+    
+    /**
+     * Immutable copy of the profile fields of a user, shared between requests.
+     * The ETag changes whenever the row is written or last_login moves.
+     */
+    public static class ProfileSnapshot {
+        private final String address;
+        private final boolean hasNft;
+        private final Integer nftCount;
+        private final String nftTokens;
+        private final Integer primaryNftId;
+        private final String holderTier;
+        private final String profileBackground;
+        private final String profileBadge;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime lastLogin;
+        private final String eTag;
+        
+        ProfileSnapshot(User user) {
+            this.address = user.getAddress();
+            this.hasNft = user.getHasNft();
+            this.nftCount = user.getNftCount();
+            this.nftTokens = user.getNftTokens();
+            this.primaryNftId = user.getPrimaryNftId();
+            this.holderTier = user.getHolderTier();
+            this.profileBackground = user.getProfileBackground();
+            this.profileBadge = user.getProfileBadge();
+            this.createdAt = user.getCreatedAt();
+            this.lastLogin = user.getLastLogin();
+            this.eTag = "\"" + Long.toHexString(user.getId() != null ? user.getId() : 0)
+                + "-" + stamp(user.getUpdatedAt()) + "-" + stamp(lastLogin) + "\"";
+        }
+        
+        private static String stamp(LocalDateTime time) {
+            return time == null ? "0" : Long.toHexString(time.toEpochSecond(ZoneOffset.UTC)) + "." + time.getNano();
+        }
+        
+        public String getAddress() { return address; }
+        public boolean getHasNft() { return hasNft; }
+        public Integer getNftCount() { return nftCount; }
+        public String getNftTokens() { return nftTokens; }
+        public Integer getPrimaryNftId() { return primaryNftId; }
+        public String getHolderTier() { return holderTier; }
+        public String getProfileBackground() { return profileBackground; }
+        public String getProfileBadge() { return profileBadge; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public LocalDateTime getLastLogin() { return lastLogin; }
+        public String getETag() { return eTag; }
     }
 } 
\ No newline at end of file
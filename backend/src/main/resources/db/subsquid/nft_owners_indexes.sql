@@ -0,0 +1,7 @@
+-- Indexes for the nft_owners lookups made by NftService.
+--
+-- NftService lower-cases wallet addresses before querying and filters on the raw
+-- owner_id column (Subsquid stores addresses lower-case), so a plain btree applies.
+-- INCLUDE (nft_id) lets Postgres answer holder lookups with an index-only scan.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS nft_owners_owner_id_idx
+    ON nft_owners (owner_id) INCLUDE (nft_id);
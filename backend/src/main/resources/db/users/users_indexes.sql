@@ -0,0 +1,7 @@
+-- Indexes on users that Hibernate's ddl-auto cannot create.
+--
+-- Addresses are stored in the casing they first logged in with, and the ownership sync
+-- worker matches them with UserRepository.findByAddressInIgnoreCase (LOWER(address) IN ...).
+-- The unique index on address cannot serve that predicate, so index the expression itself.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_address_lower_idx
+    ON users (lower(address));
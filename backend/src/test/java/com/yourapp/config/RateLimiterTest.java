@@ -0,0 +1,173 @@
+package com.yourapp.config;
+
+import com.yourapp.config.RateLimiter.RateLimitedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The limiter against a hand-driven clock
+ */
+class RateLimiterTest {
+
+    private static final String ALICE = "0x00000000000000000000000000000000000000A1";
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private RateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new RateLimiter();
+        ReflectionTestUtils.setField(limiter, "clock", (LongSupplier) now::get);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "maxKeys", 100);
+        ReflectionTestUtils.setField(limiter, "overflow", "2/60");
+        ReflectionTestUtils.setField(limiter, "authNonceIp", "3/60");
+        ReflectionTestUtils.setField(limiter, "authNonceAddress", "1/60");
+        ReflectionTestUtils.setField(limiter, "authVerifyIp", "10/60");
+    }
+
+    @Test
+    void burstIsAllowedThenLimited() {
+        limiter.init();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1");
+        }
+
+        assertThatThrownBy(() -> limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1"))
+            .isInstanceOf(RateLimitedException.class)
+            .extracting(e -> ((RateLimitedException) e).getRetryAfterSeconds()).isEqualTo(20L);
+        // Other clients have buckets of their own
+        assertThatCode(() -> limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.2")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void permitsRefillEvenly() {
+        limiter.init();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1");
+        }
+
+        advanceMillis(20_000);
+        limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1");
+        assertThatThrownBy(() -> limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1"))
+            .isInstanceOf(RateLimitedException.class);
+
+        // A bucket left alone for the whole period is back to a full burst
+        advanceMillis(60_000);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1");
+        }
+    }
+
+    @Test
+    void retryAfterRoundsUpToWholeSeconds() {
+        limiter.init();
+        for (int i = 0; i < 10; i++) {
+            limiter.acquireIp(RateLimiter.AUTH_VERIFY, "10.0.0.1");
+        }
+
+        // 10/60: a permit every 6 s
+        advanceMillis(500);
+        assertThat(retryAfter(RateLimiter.AUTH_VERIFY, "10.0.0.1")).isEqualTo(6L);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(5_500) - 1);
+        assertThat(retryAfter(RateLimiter.AUTH_VERIFY, "10.0.0.1")).isEqualTo(1L);
+        now.incrementAndGet();
+        assertThatCode(() -> limiter.acquireIp(RateLimiter.AUTH_VERIFY, "10.0.0.1")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void addressCaseVariantsShareABucket() {
+        limiter.init();
+        limiter.acquireAddress(RateLimiter.AUTH_NONCE, ALICE);
+
+        assertThatThrownBy(() -> limiter.acquireAddress(RateLimiter.AUTH_NONCE, ALICE.toLowerCase()))
+            .isInstanceOf(RateLimitedException.class);
+        assertThatThrownBy(() -> limiter.acquireAddress(RateLimiter.AUTH_NONCE, " " + ALICE + " "))
+            .isInstanceOf(RateLimitedException.class);
+    }
+
+    @Test
+    void ipv6ClientsAreKeyedByTheirSlash64() {
+        assertThat(RateLimiter.ipKey("2001:db8::1")).isEqualTo(RateLimiter.ipKey("2001:db8:0:0:ffff:1:2:3"));
+        assertThat(RateLimiter.ipKey("2001:db8::1")).isNotEqualTo(RateLimiter.ipKey("2001:db8:0:1::1"));
+        assertThat(RateLimiter.ipKey("::ffff:10.0.0.1")).isEqualTo("10.0.0.1");
+        assertThat(RateLimiter.ipKey("10.0.0.1")).isEqualTo("10.0.0.1");
+
+        limiter.init();
+        for (int i = 0; i < 3; i++) {
+            limiter.acquireIp(RateLimiter.AUTH_NONCE, "2001:db8::" + Integer.toHexString(i + 1));
+        }
+        assertThatThrownBy(() -> limiter.acquireIp(RateLimiter.AUTH_NONCE, "2001:db8::ff"))
+            .isInstanceOf(RateLimitedException.class);
+    }
+
+    @Test
+    void newKeysBeyondMaxKeysAreNotLockedIntoOneBucket() {
+        ReflectionTestUtils.setField(limiter, "maxKeys", 2);
+        limiter.init();
+        exhaust("10.0.0.1");
+        exhaust("10.0.0.2");
+
+        // The map is full of busy buckets: new clients pass, within the overflow cap of 2
+        limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.3");
+        limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.4");
+        assertThatThrownBy(() -> limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.5"))
+            .isInstanceOf(RateLimitedException.class);
+
+        // Once the tracked buckets have refilled, a new key evicts them and is tracked itself
+        advanceMillis(60_000);
+        exhaust("10.0.0.6");
+        assertThatThrownBy(() -> limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.6"))
+            .isInstanceOf(RateLimitedException.class);
+        assertThat(limitStats("auth-nonce.ip"))
+            .containsEntry("keys", 1)
+            .containsEntry("evicted", 2L)
+            .containsEntry("overflowed", 3L);
+    }
+
+    @Test
+    void sweepDropsRefilledBuckets() {
+        limiter.init();
+        limiter.acquireIp(RateLimiter.AUTH_NONCE, "10.0.0.1");
+        exhaust("10.0.0.2");
+
+        advanceMillis(20_000);
+        limiter.sweep();
+
+        assertThat(limitStats("auth-nonce.ip")).containsEntry("keys", 1);
+    }
+
+    private void exhaust(String ip) {
+        for (int i = 0; i < 3; i++) {
+            limiter.acquireIp(RateLimiter.AUTH_NONCE, ip);
+        }
+    }
+
+    private long retryAfter(String group, String ip) {
+        try {
+            limiter.acquireIp(group, ip);
+        } catch (RateLimitedException e) {
+            return e.getRetryAfterSeconds();
+        }
+        throw new AssertionError("expected " + ip + " to be limited");
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> limitStats(String limit) {
+        return (Map<String, Object>) ((Map<String, Object>) limiter.getStats().get("limits")).get(limit);
+    }
+}
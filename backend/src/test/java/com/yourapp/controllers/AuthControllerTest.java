@@ -0,0 +1,158 @@
+package com.yourapp.controllers;
+
+import com.yourapp.config.Bulkhead.BulkheadFullException;
+import com.yourapp.config.RateLimiter;
+import com.yourapp.controllers.AuthController.SignatureRequest;
+import com.yourapp.metrics.StageMetrics;
+import com.yourapp.models.User;
+import com.yourapp.services.AuthService;
+import com.yourapp.services.AuthService.VerificationRejectedException;
+import com.yourapp.services.NftService;
+import com.yourapp.services.NftService.NftHolderInfo;
+import com.yourapp.services.NftThumbnailService;
+import com.yourapp.services.NonceService;
+import com.yourapp.services.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A login that fails with a retryable 503 must leave its nonce usable, so the client
+ * can retry the same signed message
+ */
+class AuthControllerTest {
+
+    private static final String ADDRESS = "0x00000000000000000000000000000000000000aa";
+
+    private AuthService authService;
+    private UserService userService;
+    private NftService nftService;
+    private NonceService nonceService;
+    private AuthController controller;
+
+    @BeforeEach
+    void setUp() {
+        authService = mock(AuthService.class);
+        userService = mock(UserService.class);
+        nftService = mock(NftService.class);
+        // A trusted change feed skips the ownership prefetch
+        when(nftService.getChangeFeedTrustedSince()).thenReturn(LocalDateTime.now());
+
+        nonceService = new NonceService();
+        ReflectionTestUtils.setField(nonceService, "maxEntries", 100);
+        ReflectionTestUtils.setField(nonceService, "tickMillis", 1000L);
+        nonceService.init();
+
+        controller = new AuthController(authService, nonceService, userService, nftService,
+            mock(NftThumbnailService.class), new StageMetrics(new SimpleMeterRegistry()), new RateLimiter());
+        ReflectionTestUtils.setField(controller, "pipelineEnabled", true);
+        ReflectionTestUtils.setField(controller, "ownershipTimeoutMs", 1000L);
+
+        User user = new User();
+        user.setAddress(ADDRESS);
+        when(userService.createOrUpdateUser(eq(ADDRESS), any())).thenReturn(user);
+    }
+
+    @Test
+    void busyVerificationLeavesNonceForTheRetry() {
+        SignatureRequest request = signedLogin();
+        when(authService.verifySignature(anyString(), anyString(), anyString()))
+            .thenThrow(new VerificationRejectedException("Signature verification is saturated"))
+            .thenReturn(true);
+
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void busyUserDatabaseRestoresNonceForTheRetry() {
+        SignatureRequest request = signedLogin();
+        when(authService.verifySignature(anyString(), anyString(), anyString())).thenReturn(true);
+        User user = new User();
+        user.setAddress(ADDRESS);
+        when(userService.createOrUpdateUser(eq(ADDRESS), any()))
+            .thenThrow(new BulkheadFullException("users-db bulkhead is full"))
+            .thenReturn(user);
+
+        assertThatThrownBy(() -> controller.verifySignature(request)).isInstanceOf(BulkheadFullException.class);
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void invalidSignatureDoesNotBurnTheNonce() {
+        SignatureRequest request = signedLogin();
+        when(authService.verifySignature(anyString(), anyString(), anyString())).thenReturn(false, true);
+
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void successfulLoginCannotBeReplayed() {
+        SignatureRequest request = signedLogin();
+        when(authService.verifySignature(anyString(), anyString(), anyString())).thenReturn(true);
+
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void malformedSignatureNeverStartsALookup() {
+        when(nftService.getChangeFeedTrustedSince()).thenReturn(null);
+        SignatureRequest request = signedLogin();
+        request.setSignature("0x1234");
+
+        assertThat(controller.verifySignature(request).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        verify(nftService, never()).prefetchNftHolderInfo(anyString());
+        verify(authService, never()).verifySignature(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void failedLoginDoesNotKeepItsPrefetch() {
+        when(nftService.getChangeFeedTrustedSince()).thenReturn(null);
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(ADDRESS);
+        CompletableFuture<NftHolderInfo> prefetch = new CompletableFuture<>();
+        when(nftService.prefetchNftHolderInfo(ADDRESS)).thenReturn(prefetch);
+        when(authService.verifySignature(anyString(), anyString(), anyString())).thenReturn(false);
+
+        assertThat(controller.verifySignature(signedLogin()).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(prefetch.isCancelled()).isTrue();
+        verify(nftService, never()).acceptPrefetched(any());
+    }
+
+    @Test
+    void verifiedLoginKeepsItsPrefetch() {
+        when(nftService.getChangeFeedTrustedSince()).thenReturn(null);
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(ADDRESS);
+        when(nftService.prefetchNftHolderInfo(ADDRESS)).thenReturn(CompletableFuture.completedFuture(info));
+        when(authService.verifySignature(anyString(), anyString(), anyString())).thenReturn(true);
+
+        assertThat(controller.verifySignature(signedLogin()).getStatusCode()).isEqualTo(HttpStatus.OK);
+        verify(nftService).acceptPrefetched(info);
+    }
+
+    private SignatureRequest signedLogin() {
+        SignatureRequest request = new SignatureRequest();
+        request.setAddress(ADDRESS);
+        request.setMessage("Sign in to computerchan\nNonce: " + nonceService.generateNonce(ADDRESS));
+        request.setSignature("0x" + "1".repeat(128) + "1b");
+        return request;
+    }
+}
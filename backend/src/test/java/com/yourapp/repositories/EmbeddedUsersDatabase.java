@@ -0,0 +1,36 @@
+package com.yourapp.repositories;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One embedded PostgreSQL for the repository tests that need real PostgreSQL behaviour,
+ * started on first use and shared by every test class
+ */
+final class EmbeddedUsersDatabase {
+
+    private static EmbeddedPostgres postgres;
+
+    private EmbeddedUsersDatabase() {
+    }
+
+    static void register(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> postgres().getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    private static synchronized EmbeddedPostgres postgres() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,86 @@
+package com.yourapp.repositories;
+
+import com.yourapp.config.UsersIndexDdl;
+import com.yourapp.models.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The sync worker's case-insensitive batch lookup must be answerable from the
+ * lower(address) index rather than a scan of users
+ */
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(UsersIndexDdl.class)
+class UserAddressIndexTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UsersIndexDdl usersIndexDdl;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @DynamicPropertySource
+    static void usersDatabase(DynamicPropertyRegistry registry) {
+        EmbeddedUsersDatabase.register(registry);
+    }
+
+    @Test
+    void caseInsensitiveLookupUsesTheExpressionIndex() throws Exception {
+        userRepository.deleteAll();
+        userRepository.save(user("0x00000000000000000000000000000000000000Ab"));
+        userRepository.save(user("0x00000000000000000000000000000000000000cd"));
+
+        usersIndexDdl.apply();
+        // Idempotent: a restart runs it again
+        usersIndexDdl.apply();
+
+        List<User> found = userRepository.findByAddressInIgnoreCase(List.of(
+            "0x00000000000000000000000000000000000000ab", "0x00000000000000000000000000000000000000ef"));
+        assertThat(found).extracting(User::getAddress).containsExactly("0x00000000000000000000000000000000000000Ab");
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            // Two rows would always be a seq scan; only ask whether the index can serve it
+            statement.execute("SET enable_seqscan = off");
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery(
+                    "EXPLAIN SELECT * FROM users u WHERE lower(u.address) IN ('0xab', '0xef')")) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            statement.execute("RESET enable_seqscan");
+            assertThat(plan.toString()).contains("users_address_lower_idx");
+        }
+    }
+
+    private static User user(String address) {
+        User user = new User();
+        user.setAddress(address);
+        user.setLastLogin(LocalDateTime.now());
+        user.setHasNft(false);
+        user.setNftCount(0);
+        return user;
+    }
+}
@@ -0,0 +1,187 @@
+package com.yourapp.repositories;
+
+import com.yourapp.models.TokenSet;
+import com.yourapp.models.TokenSetConverter;
+import com.yourapp.models.User;
+import com.yourapp.repositories.UserRepositoryCustom.UpsertResult;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * upsertFromLogin must cost one statement per login, and two only when it loses a race
+ * with a concurrent first login. Runs against an embedded PostgreSQL: H2 has no
+ * INSERT ... ON CONFLICT inside a CTE. Statements are counted by Hibernate statistics.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.jpa.show-sql=false",
+    "spring.datasource.hikari.maximum-pool-size=4"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserRepositoryUpsertTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @DynamicPropertySource
+    static void usersDatabase(DynamicPropertyRegistry registry) {
+        EmbeddedUsersDatabase.register(registry);
+    }
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void firstLoginInsertsInOneStatement() {
+        UpsertResult result = userRepository.upsertFromLogin(candidate("0x00000000000000000000000000000000000000a1", 3, 7), null);
+
+        assertThat(result.isWritten()).isTrue();
+        assertThat(result.getUser().getNftCount()).isEqualTo(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedLoginReadsBackInOneStatement() {
+        String address = "0x00000000000000000000000000000000000000a2";
+        userRepository.upsertFromLogin(candidate(address, 3, 7), null);
+        statistics.clear();
+
+        UpsertResult result = userRepository.upsertFromLogin(candidate(address, 3, 7), null);
+
+        assertThat(result.isWritten()).isFalse();
+        assertThat(result.getUser().getNftTokenSet().toArray()).containsExactly(3, 7);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void changedHoldingsUpdateInOneStatement() {
+        String address = "0x00000000000000000000000000000000000000a3";
+        userRepository.upsertFromLogin(candidate(address, 3, 7), null);
+        statistics.clear();
+
+        UpsertResult result = userRepository.upsertFromLogin(candidate(address, 3), null);
+
+        assertThat(result.isWritten()).isTrue();
+        assertThat(result.getUser().getNftCount()).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedLoginRewritesHoldingsSyncedBeforeTheFeedWasTrusted() {
+        String address = "0x00000000000000000000000000000000000000a5";
+        userRepository.upsertFromLogin(candidate(address, 3, 7), null);
+        LocalDateTime trustedSince = LocalDateTime.now().plusSeconds(1);
+        statistics.clear();
+
+        UpsertResult result = userRepository.upsertFromLogin(candidate(address, 3, 7), trustedSince);
+
+        assertThat(result.isWritten()).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentFirstLoginIsRetriedOnce() throws Exception {
+        String address = "0x00000000000000000000000000000000000000a4";
+        User candidate = candidate(address, 3, 7);
+
+        // Another login inserts the same row and holds it uncommitted, so our statement
+        // blocks on the conflict and its snapshot predates the row
+        try (Connection race = dataSource.getConnection()) {
+            race.setAutoCommit(false);
+            insert(race, candidate);
+
+            CompletableFuture<UpsertResult> upsert = CompletableFuture.supplyAsync(() -> userRepository.upsertFromLogin(candidate, null));
+            awaitLockWait();
+            race.commit();
+
+            UpsertResult result = upsert.get(10, TimeUnit.SECONDS);
+            assertThat(result.isWritten()).isFalse();
+            assertThat(result.getUser().getAddress()).isEqualTo(address);
+        }
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    private static User candidate(String address, int... tokens) {
+        User user = new User();
+        user.setAddress(address);
+        user.setLastLogin(LocalDateTime.now());
+        user.setHasNft(tokens.length > 0);
+        user.setNftCount(tokens.length);
+        user.setNftTokenSet(TokenSet.of(tokens));
+        user.setPrimaryNftId(tokens.length > 0 ? tokens[0] : null);
+        return user;
+    }
+
+    private static void insert(Connection connection, User user) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("""
+                INSERT INTO users (address, created_at, last_login, updated_at, has_nft, nft_count,
+                                   nft_synced_at, nft_token_set, primary_nft_id)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """)) {
+            Timestamp now = Timestamp.valueOf(user.getLastLogin());
+            ps.setString(1, user.getAddress());
+            ps.setTimestamp(2, now);
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, now);
+            ps.setBoolean(5, user.getHasNft());
+            ps.setInt(6, user.getNftCount());
+            ps.setTimestamp(7, now);
+            ps.setBytes(8, new TokenSetConverter().convertToDatabaseColumn(user.getNftTokenSet()));
+            ps.setInt(9, user.getPrimaryNftId());
+            ps.executeUpdate();
+        }
+    }
+
+    private void awaitLockWait() throws SQLException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        try (Connection monitor = dataSource.getConnection();
+             PreparedStatement ps = monitor.prepareStatement(
+                 "SELECT COUNT(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'")) {
+            while (System.currentTimeMillis() < deadline) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) > 0) {
+                        return;
+                    }
+                }
+                Thread.sleep(20);
+            }
+        }
+        throw new AssertionError("upsert never waited on the concurrent insert");
+    }
+}
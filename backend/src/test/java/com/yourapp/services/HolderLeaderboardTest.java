@@ -0,0 +1,199 @@
+package com.yourapp.services;
+
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.models.User;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The treap-backed leaderboard checked against a plain sorted list after random updates
+ */
+class HolderLeaderboardTest {
+
+    // Few distinct counts, so most holders sit in tie runs; 0 takes a user off the board
+    private static final int[] COUNTS = {0, 0, 1, 1, 1, 2, 3, 5, 5, 10, 20, 50, 64};
+
+    private JdbcDataSource h2;
+    private JdbcTemplate jdbc;
+    private HolderLeaderboard leaderboard;
+
+    // Expected state: count and last-written address spelling per normalized address
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final Map<String, String> spellings = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:leaderboard-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(h2);
+        jdbc.execute("CREATE TABLE users (address VARCHAR(42), nft_count INT)");
+
+        DatabaseBulkheads bulkheads = new DatabaseBulkheads();
+        ReflectionTestUtils.setField(bulkheads, "enabled", false);
+        bulkheads.init();
+
+        leaderboard = new HolderLeaderboard(jdbc, bulkheads);
+        ReflectionTestUtils.setField(leaderboard, "enabled", true);
+        ReflectionTestUtils.setField(leaderboard, "fetchSize", 100);
+        ReflectionTestUtils.setField(leaderboard, "maxPageSize", 1000);
+    }
+
+    @Test
+    void matchesASortedReferenceAfterRandomUpdates() {
+        Random random = new Random(19);
+        for (int i = 0; i < 200; i++) {
+            String address = address(random.nextInt(300));
+            int count = COUNTS[random.nextInt(COUNTS.length)];
+            jdbc.update("INSERT INTO users VALUES (?, ?)", address, count);
+            record(address, count);
+        }
+        leaderboard.rebuild();
+        assertMatchesReference(random);
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 100; i++) {
+                // Mixed-case spellings of known wallets must land on the same entry
+                String address = address(random.nextInt(400));
+                if (random.nextInt(4) == 0) {
+                    address = "0x" + address.substring(2).toUpperCase();
+                }
+                int count = COUNTS[random.nextInt(COUNTS.length)];
+                leaderboard.update(address, count);
+                record(address, count);
+            }
+            assertMatchesReference(random);
+        }
+    }
+
+    @Test
+    void updatesDuringARebuildWinOverItsScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            String address = address(i);
+            int count = COUNTS[random.nextInt(COUNTS.length)];
+            jdbc.update("INSERT INTO users VALUES (?, ?)", address, count);
+            record(address, count);
+        }
+        leaderboard.rebuild();
+
+        // These land after the rebuild has started but before its scan has been read
+        List<Object[]> during = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            during.add(new Object[] {address(random.nextInt(150)), COUNTS[random.nextInt(COUNTS.length)]});
+        }
+        ReflectionTestUtils.setField(leaderboard, "jdbcTemplate", new JdbcTemplate(new DelegatingDataSource(h2) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                for (Object[] update : during) {
+                    leaderboard.update((String) update[0], (Integer) update[1]);
+                }
+                return connection;
+            }
+        }));
+        for (Object[] update : during) {
+            record((String) update[0], (Integer) update[1]);
+        }
+        leaderboard.rebuild();
+
+        assertMatchesReference(random);
+    }
+
+    @Test
+    void tiesShareARankAcrossPageBoundaries() {
+        jdbc.update("INSERT INTO users VALUES ('0xa', 5), ('0xb', 3), ('0xc', 3), ('0xd', 3), ('0xe', 1), ('0xf', 0)");
+        leaderboard.rebuild();
+
+        List<Map<String, Object>> page = leaderboard.getTop(2, 3);
+
+        assertThat(page).extracting(e -> e.get("address")).containsExactly("0xc", "0xd", "0xe");
+        assertThat(page).extracting(e -> e.get("rank")).containsExactly(2, 2, 5);
+        assertThat(leaderboard.getRank("0xF")).isNull();
+        assertThat(leaderboard.getRank("0xD")).containsEntry("rank", 2).containsEntry("holders", 5);
+    }
+
+    private void assertMatchesReference(Random random) {
+        List<String> holders = new ArrayList<>();
+        counts.forEach((key, count) -> {
+            if (count > 0) {
+                holders.add(key);
+            }
+        });
+        holders.sort(Comparator.<String>comparingInt(counts::get).reversed().thenComparing(Comparator.naturalOrder()));
+
+        assertThat(leaderboard.getHolderCount()).isEqualTo(holders.size());
+        assertThat(leaderboard.getTop(0, 1000)).extracting(e -> e.get("address"))
+            .containsExactlyElementsOf(holders.stream().map(spellings::get).toList());
+
+        // Pages starting anywhere, most of them inside a tie run
+        for (int i = 0; i < 20; i++) {
+            int offset = random.nextInt(holders.size() + 2);
+            int limit = 1 + random.nextInt(15);
+            List<Map<String, Object>> page = leaderboard.getTop(offset, limit);
+            int expectedSize = Math.max(0, Math.min(limit, holders.size() - offset));
+            assertThat(page).hasSize(expectedSize);
+            for (int j = 0; j < page.size(); j++) {
+                String key = holders.get(offset + j);
+                assertThat(page.get(j))
+                    .containsEntry("address", spellings.get(key))
+                    .containsEntry("nftCount", counts.get(key))
+                    .containsEntry("rank", expectedRank(counts.get(key)));
+            }
+        }
+
+        for (Map.Entry<String, Integer> user : counts.entrySet()) {
+            Map<String, Object> rank = leaderboard.getRank(user.getKey());
+            if (user.getValue() == 0) {
+                assertThat(rank).isNull();
+            } else {
+                assertThat(rank)
+                    .containsEntry("rank", expectedRank(user.getValue()))
+                    .containsEntry("holders", holders.size());
+            }
+        }
+
+        Map<String, Integer> tiers = new HashMap<>();
+        for (String tier : new String[] {"WHALE", "DIAMOND", "GOLD", "SILVER", "BRONZE", "NONE"}) {
+            tiers.put(tier, 0);
+        }
+        counts.values().forEach(count -> {
+            String tier = User.holderTierFor(count);
+            tiers.merge(tier != null ? tier : "NONE", 1, Integer::sum);
+        });
+        assertThat(leaderboard.getTierCounts())
+            .containsEntry("tiers", tiers)
+            .containsEntry("holders", holders.size())
+            .containsEntry("users", counts.size());
+    }
+
+    private int expectedRank(int count) {
+        return 1 + (int) counts.values().stream().filter(c -> c > count).count();
+    }
+
+    private void record(String address, int count) {
+        // An unchanged count is a no-op, so the stored spelling stays as it was
+        String key = NftService.normalizeAddress(address);
+        if (!Integer.valueOf(count).equals(counts.put(key, count))) {
+            spellings.put(key, address);
+        }
+    }
+
+    private static String address(int i) {
+        return String.format("0x%040x", i * 7919);
+    }
+}
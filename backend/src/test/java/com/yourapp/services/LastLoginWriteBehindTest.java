@@ -0,0 +1,123 @@
+package com.yourapp.services;
+
+import com.yourapp.config.DatabaseBulkheads;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LastLoginWriteBehindTest {
+
+    private static final String ALICE = "0x00000000000000000000000000000000000000A1";
+    private static final String BOB = "0x00000000000000000000000000000000000000b0";
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    private JdbcTemplate jdbc;
+    private LastLoginWriteBehind writeBehind;
+
+    // Batches handed to the database, and how many of the next ones should fail
+    private final AtomicInteger batchesSent = new AtomicInteger();
+    private final AtomicInteger failNext = new AtomicInteger();
+    private Runnable duringBatch = () -> { };
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:write-behind-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(h2) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                batchesSent.incrementAndGet();
+                duringBatch.run();
+                if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new DataAccessResourceFailureException("connection reset");
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        jdbc.execute("CREATE TABLE users (address VARCHAR(42) PRIMARY KEY, last_login TIMESTAMP)");
+        jdbc.update("INSERT INTO users VALUES (?, ?), (?, ?)", ALICE, Timestamp.valueOf(T0), BOB, Timestamp.valueOf(T0));
+
+        DatabaseBulkheads bulkheads = new DatabaseBulkheads();
+        ReflectionTestUtils.setField(bulkheads, "enabled", false);
+        bulkheads.init();
+
+        writeBehind = new LastLoginWriteBehind(jdbc, bulkheads);
+        ReflectionTestUtils.setField(writeBehind, "enabled", true);
+        ReflectionTestUtils.setField(writeBehind, "maxPending", 100);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 100);
+    }
+
+    @Test
+    void repeatedLoginsCoalesceIntoTheNewestWrite() {
+        assertThat(writeBehind.record(ALICE, T0.plusMinutes(5))).isTrue();
+        assertThat(writeBehind.record(ALICE, T0.plusMinutes(9))).isTrue();
+        // Arrives out of order; must not move the pending login back
+        assertThat(writeBehind.record(ALICE, T0.plusMinutes(7))).isTrue();
+        assertThat(writeBehind.getPending(ALICE)).isEqualTo(T0.plusMinutes(9));
+
+        writeBehind.flush();
+
+        assertThat(batchesSent.get()).isEqualTo(1);
+        assertThat(writeBehind.getStats()).containsEntry("written", 1L).containsEntry("pending", 0);
+        assertThat(lastLogin(ALICE)).isEqualTo(T0.plusMinutes(9));
+        assertThat(lastLogin(BOB)).isEqualTo(T0);
+    }
+
+    @Test
+    void flushNeverMovesLastLoginBackwards() {
+        jdbc.update("UPDATE users SET last_login = ? WHERE address = ?", Timestamp.valueOf(T0.plusHours(1)), ALICE);
+        writeBehind.record(ALICE, T0.plusMinutes(5));
+
+        writeBehind.flush();
+
+        assertThat(lastLogin(ALICE)).isEqualTo(T0.plusHours(1));
+    }
+
+    @Test
+    void failedBatchIsRequeuedWithoutLosingANewerLogin() {
+        writeBehind.record(ALICE, T0.plusMinutes(5));
+        writeBehind.record(BOB, T0.plusMinutes(5));
+        failNext.set(1);
+        // Alice logs in again while the failing batch is in flight
+        duringBatch = () -> writeBehind.record(ALICE, T0.plusMinutes(8));
+
+        writeBehind.flush();
+
+        assertThat(writeBehind.getPending(ALICE)).isEqualTo(T0.plusMinutes(8));
+        assertThat(writeBehind.getPending(BOB)).isEqualTo(T0.plusMinutes(5));
+        assertThat(writeBehind.getStats()).containsEntry("failures", 1L).containsEntry("written", 0L);
+        assertThat(lastLogin(ALICE)).isEqualTo(T0);
+
+        duringBatch = () -> { };
+        writeBehind.flush();
+
+        assertThat(lastLogin(ALICE)).isEqualTo(T0.plusMinutes(8));
+        assertThat(lastLogin(BOB)).isEqualTo(T0.plusMinutes(5));
+        assertThat(writeBehind.getStats()).containsEntry("pending", 0);
+    }
+
+    @Test
+    void fullBufferSendsNewAddressesToASynchronousSave() {
+        ReflectionTestUtils.setField(writeBehind, "maxPending", 1);
+        assertThat(writeBehind.record(ALICE, T0.plusMinutes(1))).isTrue();
+
+        assertThat(writeBehind.record(BOB, T0.plusMinutes(1))).isFalse();
+        // An address already pending still coalesces
+        assertThat(writeBehind.record(ALICE, T0.plusMinutes(2))).isTrue();
+        assertThat(writeBehind.getPending(BOB)).isNull();
+    }
+
+    private LocalDateTime lastLogin(String address) {
+        return jdbc.queryForObject("SELECT last_login FROM users WHERE address = ?", Timestamp.class, address).toLocalDateTime();
+    }
+}
@@ -0,0 +1,152 @@
+package com.yourapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.yourapp.services.NftImageCache.CachedImage;
+import com.yourapp.services.NftImageCache.ImageFetchException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The image cache against a local HTTP stub standing in for the IPFS gateway
+ */
+class NftImageCacheTest {
+
+    private static final int IMAGE_BYTES = 600 * 1024;
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer gateway;
+    private final Map<String, Integer> statusByPath = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private NftImageCache cache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        gateway = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        gateway.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            int status = statusByPath.getOrDefault(path, 200);
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                byte[] body = image(path);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        gateway.start();
+
+        cache = new NftImageCache(new NftMetadataService(new ObjectMapper()));
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "gateway", "http://127.0.0.1:" + gateway.getAddress().getPort() + "/ipfs");
+        ReflectionTestUtils.setField(cache, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "maxCacheMb", 1L);
+        ReflectionTestUtils.setField(cache, "maxImageMb", 1L);
+        ReflectionTestUtils.setField(cache, "fetchTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(cache, "maxConcurrentFetches", 2);
+        ReflectionTestUtils.setField(cache, "maxTokenId", 10000);
+        ReflectionTestUtils.setField(cache, "notFoundTtlMs", 60000L);
+        cache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.stop(0);
+    }
+
+    @Test
+    void fetchesOnceAndServesFromDisk() throws Exception {
+        CachedImage first = cache.getImage(1);
+        CachedImage second = cache.getImage(1);
+
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(second).isSameAs(first);
+        assertThat(Files.readAllBytes(first.getPath())).isEqualTo(image("/ipfs/1.png"));
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(image("/ipfs/1.png")));
+        assertThat(first.getETag()).isEqualTo("\"" + sha256 + "\"");
+    }
+
+    @Test
+    void gatewayNotFoundIsCached() {
+        statusByPath.put("/ipfs/2.png", 404);
+
+        assertThat(cache.getImage(2)).isNull();
+        assertThat(cache.getImage(2)).isNull();
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(cache.getStats()).containsEntry("notFoundHits", 1L);
+    }
+
+    @Test
+    void idsOutsideTheCollectionNeverReachTheGateway() {
+        assertThat(cache.getImage(10001)).isNull();
+        assertThat(cache.getImage(-1)).isNull();
+        assertThat(requests.get()).isZero();
+    }
+
+    @Test
+    void gatewayErrorsAreNotCached() {
+        statusByPath.put("/ipfs/3.png", 500);
+        assertThatThrownBy(() -> cache.getImage(3)).isInstanceOf(ImageFetchException.class);
+
+        statusByPath.remove("/ipfs/3.png");
+        assertThat(cache.getImage(3)).isNotNull();
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void evictedFileOutlivesTheResponseServingIt() {
+        CachedImage served = cache.getImage(4);
+        assertThat(served.pin()).isTrue();
+
+        // A second image pushes the cache over 1 MB and evicts the first
+        cache.getImage(5);
+        assertThat(Files.exists(served.getPath())).isTrue();
+
+        served.release();
+        assertThat(Files.exists(served.getPath())).isFalse();
+        assertThat(served.pin()).isFalse();
+    }
+
+    @Test
+    void sendfileHandOffKeepsTheFileUntilTheLeaseRunsOut() {
+        CachedImage served = cache.getImage(6);
+        served.pin();
+        served.releaseAfter(60_000);
+
+        cache.getImage(7);
+        cache.sweepRetired();
+        assertThat(Files.exists(served.getPath())).isTrue();
+        assertThat(cache.getStats()).containsEntry("retired", 1);
+    }
+
+    private static byte[] image(String path) {
+        byte[] body = new byte[IMAGE_BYTES];
+        byte fill = (byte) path.hashCode();
+        Arrays.fill(body, fill);
+        return body;
+    }
+}
@@ -0,0 +1,114 @@
+package com.yourapp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The holder lookups must stay index-driven as nft_owners grows. H2 in PostgreSQL mode
+ * stands in for Subsquid, with the owner_id index from db/subsquid/nft_owners_indexes.sql
+ * (H2 has no INCLUDE or CONCURRENTLY, so the plain btree part).
+ */
+class NftOwnerQueryPlanTest {
+
+    private static final String OWNER = "0x00000000000000000000000000000000000000aa";
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+            "jdbc:h2:mem:plan;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE nft_owners (owner_id VARCHAR(42), nft_id VARCHAR(10))");
+            statement.execute("CREATE INDEX nft_owners_owner_id_idx ON nft_owners (owner_id)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void holderLookupUsesOwnerIndexAsTableGrows() throws SQLException {
+        for (int rows : new int[] {100, 10_000, 50_000}) {
+            seed(rows);
+            assertThat(plan(NftService.HOLDER_SQL, ps -> ps.setString(1, OWNER)))
+                .as("plan with %d rows", rows)
+                .contains("nft_owners_owner_id_idx")
+                .doesNotContain("tableScan");
+        }
+    }
+
+    @Test
+    void batchLookupUsesOwnerIndex() throws SQLException {
+        seed(50_000);
+        String[] owners = {OWNER, "0x00000000000000000000000000000000000000bb"};
+        assertThat(plan(NftService.HOLDERS_SQL, ps -> ps.setArray(1, connection.createArrayOf("varchar", owners))))
+            .contains("nft_owners_owner_id_idx")
+            .doesNotContain("tableScan");
+    }
+
+    @Test
+    void lookupFindsOnlyTheOwnersRows() throws SQLException {
+        seed(1_000);
+        int rows = 0;
+        try (PreparedStatement ps = connection.prepareStatement(NftService.HOLDER_SQL)) {
+            ps.setString(1, OWNER);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                }
+            }
+        }
+        assertThat(rows).isEqualTo(10);
+    }
+
+    /**
+     * Top the table up to total rows: ten tokens for OWNER, the rest spread over other wallets
+     */
+    private void seed(int total) throws SQLException {
+        int existing;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM nft_owners")) {
+            rs.next();
+            existing = rs.getInt(1);
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO nft_owners (owner_id, nft_id) VALUES (?, ?)")) {
+            for (int id = existing; id < total; id++) {
+                insert.setString(1, id < 10 ? OWNER : String.format("0x%040x", id % 5_000 + 1_000));
+                insert.setString(2, Integer.toString(id));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private String plan(String sql, Binder binder) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1).toLowerCase();
+            }
+        }
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+}
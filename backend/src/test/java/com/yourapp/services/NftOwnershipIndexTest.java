@@ -0,0 +1,130 @@
+package com.yourapp.services;
+
+import com.yourapp.config.SubsquidDatabase;
+import com.yourapp.services.NftService.NftHolderInfo;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NftOwnershipIndexTest {
+
+    private static final String ALICE = "0x00000000000000000000000000000000000000a1";
+    private static final String BOB = "0x00000000000000000000000000000000000000b0";
+
+    private JdbcDataSource h2;
+    private SubsquidDatabase subsquidDatabase;
+    private NftOwnershipIndex index;
+
+    @BeforeEach
+    void setUp() {
+        h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:index-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(h2);
+        jdbc.execute("CREATE TABLE nft_owners (owner_id VARCHAR(42), nft_id VARCHAR(10))");
+        jdbc.update("INSERT INTO nft_owners VALUES (?, '1'), (?, '2'), (?, '5')", ALICE, ALICE, BOB);
+
+        subsquidDatabase = mock(SubsquidDatabase.class);
+        when(subsquidDatabase.isAvailable()).thenReturn(true);
+        when(subsquidDatabase.getDataSource()).thenReturn(h2);
+
+        index = new NftOwnershipIndex(subsquidDatabase);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "fetchSize", 100);
+        ReflectionTestUtils.setField(index, "queryTimeoutSeconds", 10);
+    }
+
+    @Test
+    void buildsFromSnapshot() {
+        index.rebuild();
+
+        assertThat(index.getNftHolderInfo(ALICE).getNftIdArray()).containsExactly(1, 2);
+        assertThat(index.getOwner(5)).isEqualTo(BOB);
+    }
+
+    @Test
+    void updatesAppliedDuringRebuildSurviveTheSwap() {
+        index.rebuild();
+
+        // Bob sends token 5 to Alice after the rebuild's scan has started
+        when(subsquidDatabase.getDataSource()).thenReturn(new DelegatingDataSource(h2) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                index.apply(holder(ALICE, 1, 2, 5));
+                index.apply(holder(BOB));
+                return connection;
+            }
+        });
+        index.rebuild();
+
+        assertThat(index.getOwner(5)).isEqualTo(ALICE);
+        assertThat(index.getNftHolderInfo(ALICE).getNftIdArray()).containsExactly(1, 2, 5);
+        assertThat(index.getNftHolderInfo(BOB).getNftIdArray()).isEmpty();
+    }
+
+    @Test
+    void updatesAfterRebuildAreNotReplayedAgain() {
+        index.rebuild();
+        index.apply(holder(BOB, 5, 7));
+        when(subsquidDatabase.getDataSource()).thenReturn(h2);
+        index.rebuild();
+
+        // The next rebuild's snapshot is authoritative again
+        assertThat(index.getNftHolderInfo(BOB).getNftIdArray()).containsExactly(5);
+    }
+
+    @Test
+    void tokenCountFollowsTransfersWithoutAWalk() {
+        index.rebuild();
+        assertThat(index.getStats()).containsEntry("wallets", 2).containsEntry("tokens", 3);
+
+        // Alice takes token 5 from Bob, then sends token 1 to a new wallet
+        index.apply(holder(ALICE, 1, 2, 5));
+        index.apply(holder("0x00000000000000000000000000000000000000c0", 1));
+        index.apply(holder(ALICE, 2, 5));
+
+        assertThat(index.getStats()).containsEntry("wallets", 2).containsEntry("tokens", 3);
+    }
+
+    @Test
+    void tokenLeavingAWalletLosesItsOwner() {
+        // Owners as read from the database are distinct String instances from ALICE
+        new JdbcTemplate(h2).update("UPDATE nft_owners SET owner_id = ? WHERE owner_id = ?", new String(ALICE), ALICE);
+        index.rebuild();
+
+        index.apply(holder(new String(ALICE), 2));
+        assertThat(index.getOwner(1)).isNull();
+
+        index.apply(holder(ALICE));
+        assertThat(index.getOwner(2)).isNull();
+        assertThat(index.getNftHolderInfo(ALICE).getNftIdArray()).isEmpty();
+    }
+
+    @Test
+    void tokensOutsideTheArrayAreIgnoredWhenRemoved() {
+        index.rebuild();
+        index.apply(holder(ALICE, 1, 2, 20_000_000));
+
+        index.apply(holder(ALICE, 1));
+
+        assertThat(index.getOwner(2)).isNull();
+        assertThat(index.getNftHolderInfo(ALICE).getNftIdArray()).containsExactly(1);
+    }
+
+    private static NftHolderInfo holder(String address, int... ids) {
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(address);
+        info.setNftIds(ids);
+        return info;
+    }
+}
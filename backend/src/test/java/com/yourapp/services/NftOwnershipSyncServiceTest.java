@@ -0,0 +1,130 @@
+package com.yourapp.services;
+
+import com.yourapp.config.CircuitBreaker.CircuitOpenException;
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.config.SubsquidDatabase;
+import com.yourapp.models.SyncCursor;
+import com.yourapp.repositories.SyncCursorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NftOwnershipSyncServiceTest {
+
+    private final AtomicReference<LocalDateTime> trustedSince = new AtomicReference<>();
+    private final AtomicReference<RuntimeException> subsquidFailure = new AtomicReference<>();
+
+    private JdbcTemplate subsquid;
+    private SyncCursor cursor;
+    private NftOwnershipSyncService sync;
+
+    @BeforeEach
+    void setUp() {
+        subsquid = mock(JdbcTemplate.class);
+        when(subsquid.queryForObject(anyString(), eq(Long.class))).thenReturn(100L);
+        SubsquidDatabase subsquidDatabase = mock(SubsquidDatabase.class);
+        when(subsquidDatabase.isAvailable()).thenReturn(true);
+        when(subsquidDatabase.getJdbcTemplate()).thenReturn(subsquid);
+
+        // Stands in for the bulkhead + breaker: fails fast while subsquidFailure is set
+        NftService nftService = mock(NftService.class);
+        when(nftService.getChangeFeedTrustedSince()).thenAnswer(inv -> trustedSince.get());
+        doAnswer(inv -> {
+            trustedSince.set(inv.getArgument(0));
+            return null;
+        }).when(nftService).setChangeFeedTrustedSince(any());
+        when(nftService.callSubsquid(any())).thenAnswer(inv -> {
+            if (subsquidFailure.get() != null) {
+                throw subsquidFailure.get();
+            }
+            return ((Supplier<?>) inv.getArgument(0)).get();
+        });
+
+        cursor = new SyncCursor();
+        cursor.setName("nft-ownership");
+        cursor.setPosition(100L);
+        ReflectionTestUtils.setField(cursor, "createdAt", LocalDateTime.now().minusDays(1));
+        SyncCursorRepository cursorRepository = mock(SyncCursorRepository.class);
+        when(cursorRepository.findById("nft-ownership")).thenReturn(Optional.of(cursor));
+        when(cursorRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        DatabaseBulkheads bulkheads = new DatabaseBulkheads();
+        ReflectionTestUtils.setField(bulkheads, "enabled", false);
+        bulkheads.init();
+
+        sync = new NftOwnershipSyncService(subsquidDatabase, nftService, mock(UserService.class), cursorRepository, bulkheads);
+        ReflectionTestUtils.setField(sync, "enabled", true);
+        ReflectionTestUtils.setField(sync, "changesTable", "transfer");
+        ReflectionTestUtils.setField(sync, "blockColumn", "block_number");
+        ReflectionTestUtils.setField(sync, "fromColumn", "from_id");
+        ReflectionTestUtils.setField(sync, "toColumn", "to_id");
+        ReflectionTestUtils.setField(sync, "batchBlocks", 200L);
+        ReflectionTestUtils.setField(sync, "maxLagBlocks", 50L);
+        ReflectionTestUtils.setField(sync, "catchUpBatchBlocks", 5000L);
+        ReflectionTestUtils.setField(sync, "catchUpMaxMillis", 30000L);
+    }
+
+    @Test
+    void trustsStateSinceCursorCreationWhileFeedNeverBroke() {
+        sync.poll();
+
+        assertThat(trustedSince.get()).isEqualTo(cursor.getCreatedAt());
+    }
+
+    @Test
+    void openCircuitStopsPollingAndWithdrawsTrust() {
+        sync.poll();
+        subsquidFailure.set(new CircuitOpenException("subsquid circuit is open", 1000));
+        sync.poll();
+
+        assertThat(trustedSince.get()).isNull();
+        assertThat(sync.getStats().get("lastError")).isEqualTo("subsquid circuit is open");
+    }
+
+    @Test
+    void failedSubsquidQueriesNeverReachTheDatabase() {
+        subsquidFailure.set(new CircuitOpenException("subsquid circuit is open", 1000));
+        sync.poll();
+
+        verify(subsquid, never()).queryForObject(anyString(), eq(Long.class));
+    }
+
+    @Test
+    void trustBoundaryMovesToRecoveryAfterAGap() {
+        sync.poll();
+        subsquidFailure.set(new IllegalStateException("connection refused"));
+        sync.poll();
+        subsquidFailure.set(null);
+        LocalDateTime beforeRecovery = LocalDateTime.now();
+        sync.poll();
+
+        assertThat(trustedSince.get()).isAfterOrEqualTo(beforeRecovery);
+    }
+
+    @Test
+    void trustBoundaryMovesAfterCatchingUp() {
+        cursor.setPosition(0L);
+        when(subsquid.queryForObject(anyString(), eq(Long.class))).thenReturn(1_000L);
+        LocalDateTime beforeCatchUp = LocalDateTime.now();
+        sync.poll();
+
+        assertThat(cursor.getPosition()).isEqualTo(1_000L);
+        assertThat(trustedSince.get()).isAfterOrEqualTo(beforeCatchUp);
+    }
+}
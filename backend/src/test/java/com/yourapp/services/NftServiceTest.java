@@ -0,0 +1,110 @@
+package com.yourapp.services;
+
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.config.SubsquidDatabase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Ownership lookups against an H2 stand-in for Subsquid that is missing when the pool starts
+ */
+class NftServiceTest {
+
+    private static final String ALICE = "0x00000000000000000000000000000000000000a1";
+
+    private String url;
+    private SubsquidDatabase subsquidDatabase;
+    private NftService nftService;
+    private Connection subsquid;
+
+    @BeforeEach
+    void setUp() {
+        // IFEXISTS: connections fail until the database has been created below
+        url = "jdbc:h2:mem:subsquid-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE";
+        subsquidDatabase = new SubsquidDatabase();
+        ReflectionTestUtils.setField(subsquidDatabase, "url", url + ";IFEXISTS=TRUE");
+        ReflectionTestUtils.setField(subsquidDatabase, "username", "sa");
+        ReflectionTestUtils.setField(subsquidDatabase, "password", "");
+        ReflectionTestUtils.setField(subsquidDatabase, "driverClassName", "org.h2.Driver");
+        ReflectionTestUtils.setField(subsquidDatabase, "maximumPoolSize", 2);
+        ReflectionTestUtils.setField(subsquidDatabase, "minimumIdle", 0);
+        ReflectionTestUtils.setField(subsquidDatabase, "connectionTimeoutMs", 250L);
+        ReflectionTestUtils.setField(subsquidDatabase, "idleTimeoutMs", 10000L);
+        ReflectionTestUtils.setField(subsquidDatabase, "maxLifetimeMs", 60000L);
+        ReflectionTestUtils.setField(subsquidDatabase, "queryTimeoutSeconds", 5);
+
+        DatabaseBulkheads bulkheads = new DatabaseBulkheads();
+        ReflectionTestUtils.setField(bulkheads, "enabled", false);
+        bulkheads.init();
+
+        nftService = new NftService(subsquidDatabase, mock(NftOwnershipIndex.class), bulkheads);
+        ReflectionTestUtils.setField(nftService, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(nftService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(nftService, "prefetchThreads", 1);
+        ReflectionTestUtils.setField(nftService, "prefetchQueueCapacity", 1);
+        ReflectionTestUtils.setField(nftService, "breakerEnabled", true);
+        ReflectionTestUtils.setField(nftService, "breakerFailureThreshold", 1);
+        ReflectionTestUtils.setField(nftService, "breakerSlowCallMs", 0L);
+        ReflectionTestUtils.setField(nftService, "breakerOpenMs", 100L);
+        ReflectionTestUtils.setField(nftService, "breakerHalfOpenProbes", 1);
+        ReflectionTestUtils.setField(nftService, "staleTtlSeconds", 60L);
+        ReflectionTestUtils.setField(nftService, "staleMaxSize", 100L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        nftService.shutdown();
+        subsquidDatabase.close();
+        if (subsquid != null) {
+            subsquid.close();
+        }
+    }
+
+    @Test
+    void subsquidDownAtStartupIsReadOnceItRecovers() throws Exception {
+        subsquidDatabase.init();
+        nftService.init();
+        assertThat(subsquidDatabase.isAvailable()).isTrue();
+
+        assertThat(nftService.getNftHolderInfo(ALICE).isStale()).isTrue();
+        assertThat(nftService.getBreakerStats()).containsEntry("state", "OPEN");
+
+        // Subsquid comes up; the next call after the open period is the half-open probe
+        subsquid = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = subsquid.createStatement()) {
+            statement.execute("CREATE TABLE nft_owners (owner_id VARCHAR(42), nft_id INT)");
+            statement.execute("INSERT INTO nft_owners VALUES ('" + ALICE + "', 9)");
+        }
+        Thread.sleep(150);
+
+        NftService.NftHolderInfo recovered = nftService.getNftHolderInfo(ALICE);
+        assertThat(recovered.isStale()).isFalse();
+        assertThat(recovered.getNftIdArray()).containsExactly(9);
+        assertThat(nftService.getBreakerStats()).containsEntry("state", "CLOSED");
+    }
+
+    @Test
+    void nullTokenIdsAreSkipped() throws Exception {
+        subsquid = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = subsquid.createStatement()) {
+            statement.execute("CREATE TABLE nft_owners (owner_id VARCHAR(42), nft_id VARCHAR(10))");
+            statement.execute("INSERT INTO nft_owners VALUES ('" + ALICE + "', '3'), ('" + ALICE + "', NULL)");
+        }
+        subsquidDatabase.init();
+        nftService.init();
+
+        NftService.NftHolderInfo info = nftService.getNftHolderInfo(ALICE);
+
+        assertThat(info.getNftIdArray()).containsExactly(3);
+        assertThat(info.getNftCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,215 @@
+package com.yourapp.services;
+
+import com.yourapp.models.TokenSet;
+import com.yourapp.services.NftImageCache.CachedImage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Thumbnails generated from a local origin directory by a single worker
+ */
+class NftThumbnailServiceTest {
+
+    @TempDir
+    Path origin;
+
+    @TempDir
+    Path cacheDir;
+
+    // Token IDs in the order the worker read their sources
+    private final List<Integer> sourceReads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch firstSource = new CountDownLatch(1);
+    private volatile int blockedToken = -1;
+
+    private NftMetadataService metadataService;
+    private NftThumbnailService thumbnails;
+
+    @BeforeEach
+    void setUp() {
+        metadataService = mock(NftMetadataService.class);
+        when(metadataService.getMaxTokenId()).thenReturn(4);
+        when(metadataService.getImageFilename(anyInt())).thenAnswer(inv -> {
+            int nftId = inv.getArgument(0);
+            sourceReads.add(nftId);
+            if (nftId == blockedToken) {
+                firstSource.await(5, TimeUnit.SECONDS);
+            }
+            return nftId + ".png";
+        });
+
+        thumbnails = new NftThumbnailService(mock(NftImageCache.class), metadataService);
+        ReflectionTestUtils.setField(thumbnails, "enabled", true);
+        ReflectionTestUtils.setField(thumbnails, "sizes", new int[] {64, 128});
+        ReflectionTestUtils.setField(thumbnails, "cacheDir", cacheDir.toString());
+        ReflectionTestUtils.setField(thumbnails, "originDir", origin.toString());
+        ReflectionTestUtils.setField(thumbnails, "workers", 1);
+        ReflectionTestUtils.setField(thumbnails, "backfill", false);
+        ReflectionTestUtils.setField(thumbnails, "maxSourcePixels", 16_777_216L);
+        ReflectionTestUtils.setField(thumbnails, "retryAfterMs", 600_000L);
+        ReflectionTestUtils.setField(thumbnails, "maxCacheMb", 256L);
+        ReflectionTestUtils.setField(thumbnails, "maxTokenId", 10000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnails.shutdown();
+    }
+
+    @Test
+    void requestedTokensRunBeforeActiveUsersBeforeBackfill() throws Exception {
+        for (int id = 0; id <= 4; id++) {
+            writeSource(id, 300, 200, false);
+        }
+        ReflectionTestUtils.setField(thumbnails, "backfill", true);
+        // Token 0 holds the only worker while the others queue up behind it
+        blockedToken = 0;
+        thumbnails.init();
+
+        thumbnails.prioritize(TokenSet.of(new int[] {3}));
+        assertThat(thumbnails.getThumbnail(4, 64)).isNull();
+        firstSource.countDown();
+        awaitIdle();
+
+        assertThat(sourceReads).containsExactly(0, 4, 3, 1, 2);
+    }
+
+    @Test
+    void fullImageStandsInUntilTheThumbnailExists() throws Exception {
+        writeSource(7, 300, 200, false);
+        thumbnails.init();
+
+        assertThat(thumbnails.getThumbnail(7, 64)).isNull();
+        awaitIdle();
+
+        CachedImage thumbnail = thumbnails.getThumbnail(7, 64);
+        assertThat(thumbnail).isNotNull();
+        BufferedImage decoded = ImageIO.read(thumbnail.getPath().toFile());
+        assertThat(decoded.getWidth()).isEqualTo(64);
+        assertThat(decoded.getHeight()).isEqualTo(43);
+        assertThat(thumbnails.getThumbnail(7, 128)).isNotNull();
+    }
+
+    @Test
+    void onlyConfiguredSizesAndCollectionIdsAreServed() {
+        thumbnails.init();
+
+        assertThat(thumbnails.isSupportedSize(64)).isTrue();
+        assertThat(thumbnails.isSupportedSize(100)).isFalse();
+        assertThat(thumbnails.getThumbnail(10001, 64)).isNull();
+        assertThat(thumbnails.getThumbnail(-1, 64)).isNull();
+        assertThat(thumbnails.getStats()).containsEntry("enqueuedRequested", 0L);
+    }
+
+    @Test
+    void repeatedRequestsQueueATokenOnce() throws Exception {
+        writeSource(5, 300, 200, false);
+        writeSource(6, 300, 200, false);
+        blockedToken = 6;
+        thumbnails.init();
+        thumbnails.getThumbnail(6, 64);
+
+        for (int i = 0; i < 100; i++) {
+            thumbnails.getThumbnail(5, 64);
+        }
+        firstSource.countDown();
+        awaitIdle();
+
+        assertThat(thumbnails.getStats()).containsEntry("enqueuedRequested", 2L);
+    }
+
+    @Test
+    void oversizedSourcesAreRejectedAndBackedOff() throws Exception {
+        writeSource(8, 300, 200, false);
+        ReflectionTestUtils.setField(thumbnails, "maxSourcePixels", 10_000L);
+        thumbnails.init();
+
+        thumbnails.getThumbnail(8, 64);
+        awaitIdle();
+        thumbnails.getThumbnail(8, 64);
+
+        assertThat(thumbnails.getStats())
+            .containsEntry("failures", 1L)
+            .containsEntry("enqueuedRequested", 1L)
+            .containsEntry("files", 0);
+    }
+
+    @Test
+    void diskUsageStaysUnderTheLimit() throws Exception {
+        ReflectionTestUtils.setField(thumbnails, "sizes", new int[] {256});
+        ReflectionTestUtils.setField(thumbnails, "maxCacheMb", 1L);
+        for (int id = 0; id < 8; id++) {
+            // Noise doesn't compress: each 256px PNG is about 256 KB
+            writeSource(id, 256, 256, true);
+        }
+        thumbnails.init();
+
+        for (int id = 0; id < 8; id++) {
+            thumbnails.getThumbnail(id, 256);
+        }
+        awaitIdle();
+
+        assertThat((Long) thumbnails.getStats().get("bytes")).isLessThanOrEqualTo(1024 * 1024L);
+        assertThat((Long) thumbnails.getStats().get("evictions")).isPositive();
+        long onDisk;
+        try (var files = Files.list(cacheDir.resolve("256"))) {
+            onDisk = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+        assertThat(onDisk).isLessThanOrEqualTo(1024 * 1024L);
+    }
+
+    @Test
+    void queueingAfterShutdownIsIgnored() {
+        thumbnails.init();
+        thumbnails.shutdown();
+
+        assertThatCode(() -> {
+            thumbnails.prioritize(TokenSet.of(new int[] {1, 2}));
+            thumbnails.getThumbnail(3, 64);
+        }).doesNotThrowAnyException();
+    }
+
+    private void writeSource(int nftId, int width, int height, boolean noise) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(nftId);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, noise ? random.nextInt() | 0xff000000 : 0xff000000 | nftId * 40);
+            }
+        }
+        ImageIO.write(image, "png", origin.resolve(nftId + ".png").toFile());
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            var stats = thumbnails.getStats();
+            long enqueued = (Long) stats.get("enqueuedRequested") + (Long) stats.get("enqueuedActiveUser")
+                + (Long) stats.get("enqueuedBackfill");
+            if ((Long) stats.get("jobsDone") == enqueued) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("thumbnail workers did not finish");
+    }
+}
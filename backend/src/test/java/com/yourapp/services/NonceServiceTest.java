@@ -0,0 +1,100 @@
+package com.yourapp.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NonceServiceTest {
+
+    private static final String ADDRESS = "0x00000000000000000000000000000000000000aA";
+
+    private NonceService nonceService;
+
+    @BeforeEach
+    void setUp() {
+        nonceService = new NonceService();
+        ReflectionTestUtils.setField(nonceService, "maxEntries", 100);
+        ReflectionTestUtils.setField(nonceService, "tickMillis", 1000L);
+        nonceService.init();
+    }
+
+    @Test
+    void repeatedRequestsForOneAddressKeepOneScheduledEntry() {
+        String last = null;
+        for (int i = 0; i < 10_000; i++) {
+            last = nonceService.generateNonce(ADDRESS);
+        }
+
+        assertThat(nonceService.getLiveCount()).isEqualTo(1);
+        assertThat(nonceService.getWheelSize()).isEqualTo(1);
+        assertThat(nonceService.validateNonce(ADDRESS, last)).isTrue();
+    }
+
+    @Test
+    void consumedNonceLeavesTheWheel() {
+        String nonce = nonceService.generateNonce(ADDRESS);
+
+        assertThat(nonceService.validateNonce(ADDRESS.toLowerCase(), nonce)).isTrue();
+        assertThat(nonceService.getLiveCount()).isZero();
+        assertThat(nonceService.getWheelSize()).isZero();
+        assertThat(nonceService.validateNonce(ADDRESS, nonce)).isFalse();
+    }
+
+    @Test
+    void wheelStaysWithinCapacityAcrossManyAddresses() {
+        for (int i = 0; i < 1_000; i++) {
+            nonceService.generateNonce(String.format("0x%040x", i));
+        }
+
+        assertThat(nonceService.getLiveCount()).isLessThanOrEqualTo(100);
+        assertThat(nonceService.getWheelSize()).isEqualTo(nonceService.getLiveCount());
+        assertThat(nonceService.getEvictionCount()).isGreaterThanOrEqualTo(900);
+    }
+
+    @Test
+    void wrongNonceIsNotConsumed() {
+        String nonce = nonceService.generateNonce(ADDRESS);
+        String wrong = nonce.equals("123456") ? "654321" : "123456";
+
+        assertThat(nonceService.validateNonce(ADDRESS, wrong)).isFalse();
+        assertThat(nonceService.validateNonce(ADDRESS, nonce)).isTrue();
+    }
+
+    @Test
+    void checkDoesNotConsume() {
+        String nonce = nonceService.generateNonce(ADDRESS);
+
+        assertThat(nonceService.checkNonce(ADDRESS, nonce)).isTrue();
+        assertThat(nonceService.checkNonce(ADDRESS, nonce)).isTrue();
+        assertThat(nonceService.validateNonce(ADDRESS, nonce)).isTrue();
+        assertThat(nonceService.checkNonce(ADDRESS, nonce)).isFalse();
+    }
+
+    @Test
+    void restoredNonceCanBeConsumedAgain() {
+        String nonce = nonceService.generateNonce(ADDRESS);
+        long expiresAt = nonceService.consumeNonce(ADDRESS, nonce);
+        assertThat(expiresAt).isPositive();
+
+        nonceService.restoreNonce(ADDRESS, nonce, expiresAt);
+
+        assertThat(nonceService.getWheelSize()).isEqualTo(1);
+        assertThat(nonceService.consumeNonce(ADDRESS, nonce)).isEqualTo(expiresAt);
+    }
+
+    @Test
+    void restoreNeverReplacesANewerNonceOrRevivesAnExpiredOne() {
+        String first = nonceService.generateNonce(ADDRESS);
+        long expiresAt = nonceService.consumeNonce(ADDRESS, first);
+        String second = nonceService.generateNonce(ADDRESS);
+
+        nonceService.restoreNonce(ADDRESS, first, expiresAt);
+        nonceService.restoreNonce("0x00000000000000000000000000000000000000bb", "123456", System.currentTimeMillis() - 1);
+
+        assertThat(nonceService.getLiveCount()).isEqualTo(1);
+        assertThat(nonceService.getWheelSize()).isEqualTo(1);
+        assertThat(nonceService.checkNonce(ADDRESS, second)).isTrue();
+    }
+}
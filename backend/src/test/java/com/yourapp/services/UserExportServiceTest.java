@@ -0,0 +1,156 @@
+package com.yourapp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.models.TokenSet;
+import com.yourapp.models.TokenSetConverter;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class UserExportServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    // Connections currently borrowed from the users database
+    private final AtomicInteger open = new AtomicInteger();
+    private JdbcDataSource h2;
+    private UserExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:export-" + System.nanoTime() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(h2);
+        jdbc.execute("CREATE TABLE users (address VARCHAR(42), nft_count INT, holder_tier VARCHAR(20), "
+            + "nft_token_set VARBINARY(1000), nft_tokens VARCHAR(1000), last_login TIMESTAMP)");
+        byte[] tokens = new TokenSetConverter().convertToDatabaseColumn(TokenSet.of(new int[] {3, 7}));
+        Timestamp login = Timestamp.valueOf(LocalDateTime.of(2026, 1, 2, 3, 4, 5));
+        jdbc.update("INSERT INTO users VALUES ('0xa1', 2, 'BRONZE', ?, NULL, ?)", tokens, login);
+        jdbc.update("INSERT INTO users VALUES ('0xb2', 1, NULL, NULL, '9', ?)", login);
+
+        DatabaseBulkheads bulkheads = new DatabaseBulkheads();
+        ReflectionTestUtils.setField(bulkheads, "enabled", false);
+        bulkheads.init();
+
+        exportService = new UserExportService(new JdbcTemplate(new CountingDataSource(h2)), bulkheads,
+            mock(LastLoginWriteBehind.class), new ObjectMapper());
+        ReflectionTestUtils.setField(exportService, "token", "secret");
+        ReflectionTestUtils.setField(exportService, "fetchSize", 1);
+        ReflectionTestUtils.setField(exportService, "spoolDir", spoolDir.toString());
+    }
+
+    @Test
+    void connectionIsReturnedBeforeTheClientReads() throws IOException {
+        int[] openWhileWriting = {-1};
+        ByteArrayOutputStream client = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                openWhileWriting[0] = Math.max(openWhileWriting[0], open.get());
+                super.write(b, off, len);
+            }
+        };
+
+        assertThat(exportService.tryStart()).isTrue();
+        assertThat(exportService.export(null, client)).isEqualTo(2);
+
+        assertThat(openWhileWriting[0]).isZero();
+        assertThat(client.toString(StandardCharsets.UTF_8)).isEqualTo(
+            "{\"address\":\"0xa1\",\"nftCount\":2,\"holderTier\":\"BRONZE\",\"nftTokens\":[3,7],\"lastLogin\":\"2026-01-02T03:04:05\"}\n"
+            + "{\"address\":\"0xb2\",\"nftCount\":1,\"holderTier\":null,\"nftTokens\":[9],\"lastLogin\":\"2026-01-02T03:04:05\"}\n");
+    }
+
+    @Test
+    void largeExportsNeverWriteToTheClientDuringTheQuery() throws IOException {
+        // Well past the JSON generator's buffer, which would otherwise flush mid-query
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(new Object[] {String.format("0x%040x", i)});
+        }
+        new JdbcTemplate(h2).batchUpdate("INSERT INTO users (address, nft_count) VALUES (?, 0)", rows);
+        int[] openWhileWriting = {0};
+        ByteArrayOutputStream client = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                openWhileWriting[0] = Math.max(openWhileWriting[0], open.get());
+                super.write(b, off, len);
+            }
+        };
+
+        exportService.tryStart();
+        assertThat(exportService.export(null, client)).isEqualTo(5002);
+        assertThat(openWhileWriting[0]).isZero();
+    }
+
+    @Test
+    void spoolFileIsRemovedWhenTheClientGoesAway() throws IOException {
+        ByteArrayOutputStream gone = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                throw new UncheckedIOException(new IOException("Broken pipe"));
+            }
+        };
+
+        exportService.tryStart();
+        try {
+            exportService.export(null, gone);
+        } catch (RuntimeException | IOException expected) {
+            // The client disconnect is reported to the caller
+        }
+
+        try (var files = Files.list(spoolDir)) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(exportService.tryStart()).isTrue();
+    }
+
+    /**
+     * Counts borrowed connections: close() on the returned connection gives it back
+     */
+    private class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(JdbcDataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            open.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        open.decrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        }
+    }
+}
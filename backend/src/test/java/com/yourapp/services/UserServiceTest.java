@@ -0,0 +1,123 @@
+package com.yourapp.services;
+
+import com.yourapp.config.DatabaseBulkheads;
+import com.yourapp.metrics.StageMetrics;
+import com.yourapp.models.User;
+import com.yourapp.repositories.UserRepository;
+import com.yourapp.services.NftService.NftHolderInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Logins against a change feed that is trusted from a fixed point: only holdings read
+ * after that point may skip the ownership lookup
+ */
+class UserServiceTest {
+
+    private static final String ADDRESS = "0x00000000000000000000000000000000000000c1";
+
+    // Rows by address, standing in for the users table
+    private final Map<String, User> rows = new ConcurrentHashMap<>();
+    private final AtomicReference<NftHolderInfo> ownership = new AtomicReference<>();
+
+    private NftService nftService;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByAddress(anyString())).thenAnswer(inv -> Optional.ofNullable(rows.get(inv.<String>getArgument(0))));
+        when(userRepository.save(any())).thenAnswer(inv -> {
+            User user = inv.getArgument(0);
+            rows.put(user.getAddress(), user);
+            return user;
+        });
+
+        nftService = mock(NftService.class);
+        when(nftService.getChangeFeedTrustedSince()).thenReturn(LocalDateTime.now().minusMinutes(5));
+        when(nftService.getNftHolderInfo(anyString())).thenAnswer(inv -> ownership.get());
+
+        DatabaseBulkheads bulkheads = new DatabaseBulkheads();
+        ReflectionTestUtils.setField(bulkheads, "enabled", false);
+        bulkheads.init();
+
+        // The write-behind buffer is full, so every last_login bump is saved straight away
+        userService = new UserService(userRepository, nftService, new StageMetrics(new SimpleMeterRegistry()),
+            bulkheads, mock(LastLoginWriteBehind.class), mock(HolderLeaderboard.class));
+        ReflectionTestUtils.setField(userService, "upsertEnabled", false);
+        ReflectionTestUtils.setField(userService, "profileCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(userService, "profileCacheTtlSeconds", 60L);
+        userService.init();
+    }
+
+    @Test
+    void loginAfterAnOutageRereadsOwnershipOnTheTrustedFeed() {
+        // Subsquid is down: the first login creates the user from the stale last-known answer
+        ownership.set(holdings().staleCopy());
+        User outage = userService.createOrUpdateUser(ADDRESS);
+        assertThat(outage.getHasNft()).isFalse();
+        assertThat(rows.get(ADDRESS).getNftSyncedAt()).isNull();
+
+        // Recovered: the recent last_login must not pass for verified holdings
+        ownership.set(holdings(42));
+        User recovered = userService.createOrUpdateUser(ADDRESS);
+
+        verify(nftService, times(2)).getNftHolderInfo(ADDRESS);
+        assertThat(recovered.getHasNft()).isTrue();
+        assertThat(recovered.getNftTokenSet().toArray()).containsExactly(42);
+        assertThat(rows.get(ADDRESS).getNftSyncedAt()).isNotNull();
+    }
+
+    @Test
+    void outageLoginKeepsAnExistingUserUnverified() {
+        User stored = new User();
+        stored.setAddress(ADDRESS);
+        stored.setLastLogin(LocalDateTime.now().minusDays(1));
+        stored.setNftSyncedAt(LocalDateTime.now().minusDays(1));
+        rows.put(ADDRESS, stored);
+
+        ownership.set(holdings().staleCopy());
+        userService.createOrUpdateUser(ADDRESS);
+        assertThat(rows.get(ADDRESS).getLastLogin()).isAfter(nftService.getChangeFeedTrustedSince());
+
+        ownership.set(holdings(7));
+        assertThat(userService.createOrUpdateUser(ADDRESS).getNftCount()).isEqualTo(1);
+        verify(nftService, times(2)).getNftHolderInfo(ADDRESS);
+    }
+
+    @Test
+    void holdingsReadSinceTheFeedWasTrustedSkipTheLookup() {
+        ownership.set(holdings(42));
+        userService.createOrUpdateUser(ADDRESS);
+
+        User again = userService.createOrUpdateUser(ADDRESS);
+
+        verify(nftService, times(1)).getNftHolderInfo(ADDRESS);
+        verify(nftService, never()).refreshNftHolderInfo(anyString());
+        assertThat(again.getNftCount()).isEqualTo(1);
+    }
+
+    private static NftHolderInfo holdings(int... ids) {
+        NftHolderInfo info = new NftHolderInfo();
+        info.setWalletAddress(ADDRESS);
+        info.setNftIds(ids);
+        return info;
+    }
+}